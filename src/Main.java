@@ -1,11 +1,74 @@
+import event.EventLog;
+import event.NoOpEventSink;
+import simulator.CommandReplayer;
+import simulator.LoadGenerator;
+import simulator.ReplaySpeed;
 import simulator.TrafficSim;
 import exceptions.DataValidationException;
 import exceptions.InvalidPriceOperation;
 import exceptions.OrderNotFoundException;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Usage:
+ * <pre>
+ *   java Main [seed]                                 run the TrafficSim and print the books, users and markets
+ *   java Main record &lt;file&gt; [seed] [commands]        record a TrafficSim run (default 100000 commands)
+ *   java Main replay &lt;file&gt; [MAXIMUM|ORIGINAL]       replay a recording and check it against the recorded run
+ *   java Main load [name=value ...]                  run the LoadGenerator and print its latencies and throughput
+ * </pre>
+ * The load options (defaults in brackets) are rate [10000 commands/s], seconds [10], warmup [2 seconds],
+ * users [1000], symbols [1000], threads [1], shards [half the CPUs], cancel [0.3], cross [0.2] and seed [random].
+ */
 public class Main {
-    public static void main(String[] args)
-            throws OrderNotFoundException, InvalidPriceOperation, DataValidationException {
-        TrafficSim.runSim();
+    public static void main(String[] args) throws OrderNotFoundException, InvalidPriceOperation,
+            DataValidationException, IOException, InterruptedException {
+        if (args.length >= 1 && args[0].equals("load")) {
+            EventLog.getInstance().setSink(new NoOpEventSink());
+            System.out.println(load(args).run());
+        } else if (args.length >= 2 && args[0].equals("record")) {
+            EventLog.getInstance().setSink(new NoOpEventSink());
+            Path file = Paths.get(args[1]);
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+            int commands = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+            long recorded = TrafficSim.record(seed, commands, file);
+            System.out.printf("Recorded %,d commands with seed %d to %s%n", recorded, seed, file);
+        } else if (args.length >= 2 && args[0].equals("replay")) {
+            EventLog.getInstance().setSink(new NoOpEventSink());
+            ReplaySpeed speed = args.length > 2 ? ReplaySpeed.valueOf(args[2]) : ReplaySpeed.MAXIMUM;
+            CommandReplayer.Result result = CommandReplayer.replay(Paths.get(args[1]), speed);
+            System.out.println(result);
+            if (!result.matches()) System.exit(1);
+        } else if (args.length == 1) {
+            TrafficSim.runSim(Long.parseLong(args[0]));
+        } else {
+            TrafficSim.runSim();
+        }
+    }
+
+    private static LoadGenerator load(String[] args) throws DataValidationException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) throw new DataValidationException("Invalid load option: " + args[i]);
+            options.put(option[0], option[1]);
+        }
+        LoadGenerator generator = new LoadGenerator(Integer.parseInt(options.getOrDefault("users", "1000")),
+                Integer.parseInt(options.getOrDefault("symbols", "1000")));
+        generator.setRate(Double.parseDouble(options.getOrDefault("rate", "10000")));
+        generator.setDuration(Double.parseDouble(options.getOrDefault("seconds", "10")),
+                Double.parseDouble(options.getOrDefault("warmup", "2")));
+        generator.setThreads(Integer.parseInt(options.getOrDefault("threads", "1")),
+                Integer.parseInt(options.getOrDefault("shards",
+                        String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)))));
+        generator.setMix(Double.parseDouble(options.getOrDefault("cancel", "0.3")),
+                Double.parseDouble(options.getOrDefault("cross", "0.2")));
+        if (options.containsKey("seed")) generator.setSeed(Long.parseLong(options.get("seed")));
+        return generator;
     }
-}
\ No newline at end of file
+}
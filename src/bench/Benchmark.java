@@ -0,0 +1,64 @@
+package bench;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One benchmark for the BenchmarkRunner. A benchmark declares its parameters (each with the values to try) in its
+ * constructor; the runner calls setup() once for every combination of parameter values, then times calls to batch(),
+ * calling reset() after each one outside the timed region. reset() is where a benchmark puts its state back (e.g.
+ * cancels the orders a batch of adds left in a book), so every batch sees the same conditions.
+ */
+public abstract class Benchmark {
+    private final String name;
+    private final LinkedHashMap<String, String[]> params = new LinkedHashMap<>();
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Declares a parameter and the values to run the benchmark with.
+     */
+    protected final void param(String name, String... values) {
+        params.put(name, values);
+    }
+
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * @return &lt;parameter name, values to try&gt;, in the order they were declared.
+     */
+    public final Map<String, String[]> getParams() {
+        return Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * Prepares the benchmark's state for one combination of parameter values.
+     * @param values &lt;parameter name, value&gt;
+     */
+    protected void setup(Map<String, String> values) throws Exception {}
+
+    /**
+     * @return How many operations one call to batch() performs; the score is the time per operation.
+     */
+    protected abstract int operationsPerBatch();
+
+    /**
+     * Performs operationsPerBatch() operations. This is the timed part.
+     */
+    protected abstract void batch(Blackhole bh) throws Exception;
+
+    /**
+     * Puts back whatever the last batch changed. Not timed.
+     */
+    protected void reset() throws Exception {}
+
+    /**
+     * Releases anything setup() acquired, once a combination of parameter values has been measured.
+     */
+    protected void tearDown() throws Exception {}
+}
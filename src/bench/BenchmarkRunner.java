@@ -0,0 +1,230 @@
+package bench;
+
+import event.EventLog;
+import event.NoOpEventSink;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks of the book, price and market data hot paths, and writes the results as JSON so they can be
+ * compared across commits.
+ * <p>
+ * Usage: java bench.BenchmarkRunner [options] [regex]
+ * <pre>
+ *   regex             only run benchmarks whose name contains a match (default: all)
+ *   -wi n             warmup iterations per parameter combination (default 3)
+ *   -i n              measured iterations per parameter combination (default 5)
+ *   -t ms             length of each iteration in milliseconds (default 500)
+ *   -p name=v1,v2     run with these values of a parameter instead of the benchmark's own (repeatable)
+ *   -o file           where to write the JSON results (default bench-results.json)
+ *   -l                list the benchmarks and their parameters, and exit
+ * </pre>
+ * Every benchmark reports the average time per operation. An iteration repeatedly times one batch() call of the
+ * benchmark and then resets its state untimed, until the iteration's time is used up; its score is the timed total
+ * divided by the operations performed. The error is the half-width of the 99.9% confidence interval of the iteration
+ * scores.
+ * <p>
+ * The JSON has the same layout as JMH's, so existing tools for comparing JMH results can read it. Unlike JMH, all
+ * benchmarks run in this one JVM, one after another, and order events are sent to a NoOpEventSink.
+ */
+public final class BenchmarkRunner {
+    /** Two-sided 99.9% Student's t quantiles for 1 to 10 degrees of freedom. */
+    private static final double[] T_999 = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59};
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 500;
+    private Pattern filter = Pattern.compile("");
+    private final Map<String, String[]> overrides = new LinkedHashMap<>();
+    private Path output = Paths.get("bench-results.json");
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        boolean list = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi": runner.warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": runner.iterations = Integer.parseInt(args[++i]); break;
+                case "-t": runner.iterationMillis = Long.parseLong(args[++i]); break;
+                case "-o": runner.output = Paths.get(args[++i]); break;
+                case "-l": list = true; break;
+                case "-p": {
+                    String[] param = args[++i].split("=", 2);
+                    runner.overrides.put(param[0], param[1].split(","));
+                    break;
+                }
+                default: runner.filter = Pattern.compile(args[i]);
+            }
+        }
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(BookBenchmarks.all());
+        benchmarks.addAll(PriceBenchmarks.all());
+        benchmarks.addAll(OrderBenchmarks.all());
+        benchmarks.addAll(MarketDataBenchmarks.all());
+        benchmarks.removeIf(b -> !runner.filter.matcher(b.getName()).find());
+
+        if (list) {
+            for (Benchmark b : benchmarks) {
+                StringBuilder s = new StringBuilder(b.getName());
+                b.getParams().forEach((name, values) -> s.append(' ').append(name).append('=')
+                        .append(String.join(",", values)));
+                System.out.println(s);
+            }
+            return;
+        }
+        runner.run(benchmarks);
+    }
+
+    private void run(List<Benchmark> benchmarks) throws Exception {
+        EventLog.getInstance().setSink(new NoOpEventSink());
+        StringBuilder json = new StringBuilder("[\n");
+        System.out.printf("%-45s %-55s %12s %10s%n", "Benchmark", "Params", "Score", "Error");
+        for (Benchmark benchmark : benchmarks) {
+            for (Map<String, String> values : combinations(benchmark)) {
+                double[] scores = measure(benchmark, values);
+                double mean = mean(scores);
+                double error = error(scores, mean);
+                System.out.printf("%-45s %-55s %12.3f %10.3f ns/op%n", benchmark.getName(), values, mean, error);
+                if (json.length() > 2) json.append(",\n");
+                appendJson(json, benchmark.getName(), values, scores, mean, error);
+            }
+        }
+        json.append("\n]\n");
+        Files.writeString(output, json);
+        System.out.println("Results written to " + output);
+    }
+
+    /**
+     * @return Every combination of the benchmark's parameter values (or their overrides), in declaration order.
+     */
+    private List<Map<String, String>> combinations(Benchmark benchmark) {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (Map.Entry<String, String[]> param : benchmark.getParams().entrySet()) {
+            String[] values = overrides.getOrDefault(param.getKey(), param.getValue());
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : values) {
+                    Map<String, String> extended = new LinkedHashMap<>(combination);
+                    extended.put(param.getKey(), value);
+                    next.add(extended);
+                }
+            }
+            combinations = next;
+        }
+        return combinations;
+    }
+
+    /**
+     * @return The score, in ns/op, of each measured iteration.
+     */
+    private double[] measure(Benchmark benchmark, Map<String, String> values) throws Exception {
+        Blackhole bh = new Blackhole();
+        benchmark.setup(values);
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                iteration(benchmark, bh);
+            }
+            double[] scores = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                scores[i] = iteration(benchmark, bh);
+            }
+            return scores;
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private double iteration(Benchmark benchmark, Blackhole bh) throws Exception {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000;
+        long timed = 0;
+        long operations = 0;
+        do {
+            long start = System.nanoTime();
+            benchmark.batch(bh);
+            timed += System.nanoTime() - start;
+            operations += benchmark.operationsPerBatch();
+            benchmark.reset();
+        } while (System.nanoTime() < deadline);
+        return (double) timed / operations;
+    }
+
+    private static double mean(double[] scores) {
+        double sum = 0;
+        for (double score : scores) sum += score;
+        return sum / scores.length;
+    }
+
+    private static double error(double[] scores, double mean) {
+        int n = scores.length;
+        if (n < 2) return Double.NaN;
+        double squares = 0;
+        for (double score : scores) squares += (score - mean) * (score - mean);
+        double t = n - 1 <= T_999.length ? T_999[n - 2] : 3.29;
+        return t * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+    }
+
+    private void appendJson(StringBuilder json, String name, Map<String, String> values, double[] scores,
+                            double mean, double error) {
+        json.append("  {\n");
+        json.append("    \"benchmark\": ").append(quote(name)).append(",\n");
+        json.append("    \"mode\": \"avgt\",\n");
+        json.append("    \"threads\": 1,\n");
+        json.append("    \"forks\": 0,\n");
+        json.append("    \"jdkVersion\": ").append(quote(System.getProperty("java.version"))).append(",\n");
+        json.append("    \"vmName\": ").append(quote(System.getProperty("java.vm.name"))).append(",\n");
+        json.append("    \"warmupIterations\": ").append(warmupIterations).append(",\n");
+        json.append("    \"measurementIterations\": ").append(iterations).append(",\n");
+        json.append("    \"measurementTime\": ").append(quote(iterationMillis + " ms")).append(",\n");
+        json.append("    \"params\": {");
+        String separator = "";
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            json.append(separator).append(quote(value.getKey())).append(": ").append(quote(value.getValue()));
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("    \"primaryMetric\": {\n");
+        json.append("      \"score\": ").append(number(mean)).append(",\n");
+        json.append("      \"scoreError\": ").append(number(error)).append(",\n");
+        json.append("      \"scoreConfidence\": [").append(number(mean - error)).append(", ")
+                .append(number(mean + error)).append("],\n");
+        json.append("      \"scoreUnit\": \"ns/op\",\n");
+        json.append("      \"rawData\": [[");
+        for (int i = 0; i < scores.length; i++) {
+            if (i > 0) json.append(", ");
+            json.append(number(scores[i]));
+        }
+        json.append("]]\n");
+        json.append("    }\n");
+        json.append("  }");
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format("%.4f", value) : "\"NaN\"";
+    }
+
+    private static String quote(String s) {
+        StringBuilder q = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                q.append('\\').append(c);
+            } else if (c < 0x20) {
+                q.append(String.format("\\u%04x", (int) c));
+            } else {
+                q.append(c);
+            }
+        }
+        return q.append('"').toString();
+    }
+}
@@ -0,0 +1,35 @@
+package bench;
+
+/**
+ * Consumes the results of benchmarked code so the JIT cannot drop the code as dead. Each consume method compares its
+ * argument with volatile fields whose values the JIT cannot know, and only stores it if the comparison (which never
+ * holds in practice) succeeds.
+ */
+public final class Blackhole {
+    private volatile Object bait;
+    private volatile long long1 = 1;
+    private volatile long long2 = 2;
+
+    /** Written only if a consumed value matches bait, which never happens. */
+    public volatile Object escaped;
+
+    public void consume(Object o) {
+        if (o == bait && o != null) {
+            escaped = o;
+        }
+    }
+
+    public void consume(long v) {
+        if (v == long1 & v == long2) {
+            escaped = this;
+        }
+    }
+
+    public void consume(int v) {
+        consume((long) v);
+    }
+
+    public void consume(boolean v) {
+        consume(v ? 1L : 0L);
+    }
+}
@@ -0,0 +1,276 @@
+package bench;
+
+import order.Order;
+import price.PriceFactory;
+import product.BookSide;
+import product.BookType;
+import product.OrderStorage;
+import product.ProductBook;
+import product.ProductBookSide;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks of the book's hot paths. Each runs against a book whose sides are filled with `levels` price levels of
+ * `depth` orders each (BUY from $100.00 down, SELL from $100.01 up, 100 shares per order), indexed as `type` and
+ * stored as `storage`. Orders used by a batch are made beforehand, outside the timed region.
+ */
+final class BookBenchmarks {
+    private static final String SYMBOL = "BENCH";
+    private static final String USER = "BOB";
+    private static final int BATCH = 1000;
+    private static final int VOLUME = 100;
+    private static final int BUY_TOP = 10000;
+    private static final int SELL_TOP = 10001;
+
+    private BookBenchmarks() {}
+
+    static List<Benchmark> all() {
+        return List.of(new Add(), new Cancel(), new TradeOut(), new TopOfBookPrice(), new TryTrade());
+    }
+
+    /**
+     * Builds the filled book for the current parameter values.
+     */
+    private abstract static class BookBenchmark extends Benchmark {
+        final Random random = new Random(42);
+        ProductBook book;
+        ProductBookSide buySide;
+        ProductBookSide sellSide;
+        int levels;
+        int depth;
+
+        BookBenchmark(String name) {
+            super(name);
+            param("type", "TREE", "LADDER");
+            param("storage", "OBJECTS");
+            param("levels", "10", "1000");
+            param("depth", "1", "100");
+        }
+
+        @Override
+        protected void setup(Map<String, String> values) throws Exception {
+            levels = Integer.parseInt(values.get("levels"));
+            depth = Integer.parseInt(values.get("depth"));
+            book = new ProductBook(SYMBOL, BookType.valueOf(values.get("type")),
+                    OrderStorage.valueOf(values.get("storage")));
+            buySide = book.getSide(BookSide.BUY);
+            sellSide = book.getSide(BookSide.SELL);
+            for (int d = 0; d < depth; d++) {
+                for (int l = 0; l < levels; l++) {
+                    buySide.add(order(BookSide.BUY, BUY_TOP - l));
+                    sellSide.add(order(BookSide.SELL, SELL_TOP + l));
+                }
+            }
+        }
+
+        @Override
+        protected void tearDown() {
+            book = null;
+            buySide = null;
+            sellSide = null;
+        }
+
+        /**
+         * @return A BUY order at a random one of the book's levels.
+         */
+        Order randomBuy() throws Exception {
+            return order(BookSide.BUY, BUY_TOP - random.nextInt(levels));
+        }
+    }
+
+    /** ProductBookSide.add of an order at an existing level. */
+    private static final class Add extends BookBenchmark {
+        private final Order[] pending = new Order[BATCH];
+
+        Add() {
+            super("ProductBookSide.add");
+        }
+
+        @Override
+        protected void setup(Map<String, String> values) throws Exception {
+            super.setup(values);
+            prepare();
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            for (Order o : pending) {
+                bh.consume(buySide.add(o));
+            }
+        }
+
+        @Override
+        protected void reset() throws Exception {
+            for (Order o : pending) {
+                buySide.cancel(o.getId());
+            }
+            prepare();
+        }
+
+        private void prepare() throws Exception {
+            for (int i = 0; i < BATCH; i++) {
+                pending[i] = randomBuy();
+            }
+        }
+    }
+
+    /** ProductBookSide.cancel of orders spread over the book's levels, in random order. */
+    private static final class Cancel extends BookBenchmark {
+        private final long[] ids = new long[BATCH];
+
+        Cancel() {
+            super("ProductBookSide.cancel");
+        }
+
+        @Override
+        protected void setup(Map<String, String> values) throws Exception {
+            super.setup(values);
+            reset();
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            for (long id : ids) {
+                bh.consume(buySide.cancel(id));
+            }
+        }
+
+        @Override
+        protected void reset() throws Exception {
+            for (int i = 0; i < BATCH; i++) {
+                Order o = randomBuy();
+                buySide.add(o);
+                ids[i] = o.getId();
+            }
+            for (int i = BATCH - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long id = ids[i];
+                ids[i] = ids[j];
+                ids[j] = id;
+            }
+        }
+    }
+
+    /** ProductBookSide.tradeOut of the oldest order at the top of the SELL side. */
+    private static final class TradeOut extends BookBenchmark {
+        private final long[] traded = new long[BATCH];
+        private int ops;
+
+        TradeOut() {
+            super("ProductBookSide.tradeOut");
+        }
+
+        @Override
+        protected void setup(Map<String, String> values) throws Exception {
+            super.setup(values);
+            ops = Math.min(BATCH, levels * depth);
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return ops;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            for (int i = 0; i < ops; i++) {
+                long top = sellSide.topOfBookCents();
+                traded[i] = top;
+                sellSide.tradeOut(top, VOLUME);
+            }
+            bh.consume(sellSide.getOrderCount());
+        }
+
+        @Override
+        protected void reset() throws Exception {
+            for (int i = 0; i < ops; i++) {
+                sellSide.add(order(BookSide.SELL, (int) traded[i]));
+            }
+        }
+    }
+
+    /** ProductBookSide.topOfBookPrice. */
+    private static final class TopOfBookPrice extends BookBenchmark {
+        TopOfBookPrice() {
+            super("ProductBookSide.topOfBookPrice");
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            for (int i = 0; i < BATCH; i++) {
+                bh.consume(buySide.topOfBookPrice());
+            }
+        }
+    }
+
+    /**
+     * ProductBook.add of a BUY order that crosses the spread and trades out the oldest order at the top of the SELL
+     * side, i.e. the add, ProductBook.tryTrade and the top of book update together.
+     */
+    private static final class TryTrade extends BookBenchmark {
+        private final Order[] pending = new Order[BATCH];
+        private final long[] traded = new long[BATCH];
+        private int ops;
+
+        TryTrade() {
+            super("ProductBook.tryTrade");
+        }
+
+        @Override
+        protected void setup(Map<String, String> values) throws Exception {
+            super.setup(values);
+            ops = Math.min(BATCH, levels * depth);
+            prepare();
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return ops;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) throws Exception {
+            for (int i = 0; i < ops; i++) {
+                traded[i] = sellSide.topOfBookCents();
+                bh.consume(book.add(pending[i]));
+            }
+        }
+
+        @Override
+        protected void reset() throws Exception {
+            for (int i = 0; i < ops; i++) {
+                sellSide.add(order(BookSide.SELL, (int) traded[i]));
+            }
+            prepare();
+        }
+
+        private void prepare() throws Exception {
+            // Priced through every SELL level, so each one fills against exactly one resting order.
+            for (int i = 0; i < ops; i++) {
+                pending[i] = order(BookSide.BUY, SELL_TOP + levels);
+            }
+        }
+    }
+
+    private static Order order(BookSide side, int cents) throws Exception {
+        return new Order(USER, SYMBOL, PriceFactory.makePrice(cents), VOLUME, side);
+    }
+}
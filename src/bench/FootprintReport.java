@@ -0,0 +1,61 @@
+package bench;
+
+import event.EventLog;
+import event.NoOpEventSink;
+import order.Order;
+import price.PriceFactory;
+import product.BookSide;
+import product.BookType;
+import product.OrderStorage;
+import product.ProductBook;
+
+import java.lang.ref.Reference;
+
+/**
+ * Prints how much heap a book full of resting orders retains with each OrderStorage.
+ * <p>
+ * Usage: java bench.FootprintReport [orderCount]
+ * <p>
+ * For each storage, a fresh LADDER book is filled with orderCount non-crossing orders spread over 1000 price levels
+ * per side, and the retained heap (measured after a full GC) is compared with the heap before the book was built.
+ */
+public final class FootprintReport {
+    private static final String[] USERS = {"ANN", "BOB", "CAT", "DOG", "EGG"};
+
+    private FootprintReport() {}
+
+    public static void main(String[] args) throws Exception {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        EventLog.getInstance().setSink(new NoOpEventSink());
+
+        System.out.printf("%-8s %12s %14s%n", "Storage", "Orders", "Bytes/order");
+        for (OrderStorage storage : OrderStorage.values()) {
+            long before = usedHeap();
+            ProductBook book = fill(storage, orderCount);
+            long after = usedHeap();
+            System.out.printf("%-8s %,12d %,14.1f%n", storage, orderCount, (after - before) / (double) orderCount);
+            Reference.reachabilityFence(book);
+        }
+    }
+
+    private static ProductBook fill(OrderStorage storage, int orderCount) throws Exception {
+        ProductBook book = new ProductBook("FOOT", BookType.LADDER, storage);
+        for (int i = 0; i < orderCount; i++) {
+            BookSide side = (i & 1) == 0 ? BookSide.BUY : BookSide.SELL;
+            int cents = side == BookSide.BUY ? 9000 + i % 1000 : 10001 + i % 1000;
+            book.add(new Order(USERS[i % USERS.length], "FOOT", PriceFactory.makePrice(cents), 100, side));
+        }
+        return book;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
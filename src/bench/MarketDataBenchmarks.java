@@ -0,0 +1,79 @@
+package bench;
+
+import currentmarket.CurrentMarketObserver;
+import currentmarket.CurrentMarketPublisher;
+import currentmarket.CurrentMarketSide;
+import price.PriceFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks of publishing current market updates.
+ */
+final class MarketDataBenchmarks {
+    private static final String SYMBOL = "BENCH";
+
+    private MarketDataBenchmarks() {}
+
+    static List<Benchmark> all() {
+        return List.of(new FanOut());
+    }
+
+    /**
+     * CurrentMarketPublisher.acceptCurrentMarket delivering one update to `observers` observers of the symbol. The
+     * score is the time per update, so it grows with the number of observers.
+     */
+    private static final class FanOut extends Benchmark {
+        private final CurrentMarketSide buySide = new CurrentMarketSide(PriceFactory.makePrice(10000), 100);
+        private final CurrentMarketSide sellSide = new CurrentMarketSide(PriceFactory.makePrice(10001), 100);
+        private final List<CountingObserver> observers = new ArrayList<>();
+        private int updates;
+
+        FanOut() {
+            super("CurrentMarketPublisher.acceptCurrentMarket");
+            param("observers", "1", "10", "100", "1000", "10000");
+        }
+
+        @Override
+        protected void setup(Map<String, String> params) {
+            int count = Integer.parseInt(params.get("observers"));
+            for (int i = 0; i < count; i++) {
+                observers.add(new CountingObserver());
+            }
+            CurrentMarketPublisher.getInstance().subscribeAll(SYMBOL, observers);
+            // About 100,000 deliveries per batch, whatever the fan-out.
+            updates = Math.max(1, 100_000 / count);
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return updates;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            CurrentMarketPublisher publisher = CurrentMarketPublisher.getInstance();
+            for (int i = 0; i < updates; i++) {
+                publisher.acceptCurrentMarket(SYMBOL, buySide, sellSide);
+            }
+            bh.consume(observers.get(0).updates);
+        }
+
+        @Override
+        protected void tearDown() {
+            CurrentMarketPublisher.getInstance().unSubscribeAll(SYMBOL, observers);
+            observers.clear();
+        }
+    }
+
+    private static final class CountingObserver implements CurrentMarketObserver {
+        long updates;
+
+        @Override
+        public void updateCurrentMarket(String symbol, CurrentMarketSide buySide, CurrentMarketSide sellSide) {
+            updates++;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package bench;
+
+import order.Order;
+import price.Price;
+import price.PriceFactory;
+import product.BookSide;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks of creating an Order and of making its OrderDTO.
+ */
+final class OrderBenchmarks {
+    private static final int BATCH = 1000;
+
+    private OrderBenchmarks() {}
+
+    static List<Benchmark> all() {
+        return List.of(new Construct(), new MakeTradableDTO());
+    }
+
+    /** The Order constructor, including validation and the new id. */
+    private static final class Construct extends Benchmark {
+        private final Price price = PriceFactory.makePrice(10000);
+
+        Construct() {
+            super("Order.<init>");
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) throws Exception {
+            for (int i = 0; i < BATCH; i++) {
+                bh.consume(new Order("BOB", "BENCH", price, 100, BookSide.BUY));
+            }
+        }
+    }
+
+    /** Order.makeTradableDTO. */
+    private static final class MakeTradableDTO extends Benchmark {
+        private Order order;
+
+        MakeTradableDTO() {
+            super("Order.makeTradableDTO");
+        }
+
+        @Override
+        protected void setup(Map<String, String> params) throws Exception {
+            order = new Order("BOB", "BENCH", PriceFactory.makePrice(10000), 100, BookSide.BUY);
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            for (int i = 0; i < BATCH; i++) {
+                bh.consume(order.makeTradableDTO());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import price.PriceFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks of PriceFactory.makePrice. Prices are drawn at random from `range` cents starting at $100.00, so a small
+ * range stays within PriceFactory's cache of recent prices and a large one mostly misses it.
+ */
+final class PriceBenchmarks {
+    private static final int BATCH = 1000;
+    private static final int BASE_CENTS = 10000;
+
+    private PriceBenchmarks() {}
+
+    static List<Benchmark> all() {
+        return List.of(new FromInt(), new FromString());
+    }
+
+    /** PriceFactory.makePrice(int). */
+    private static final class FromInt extends Benchmark {
+        private final int[] values = new int[BATCH];
+
+        FromInt() {
+            super("PriceFactory.makePrice(int)");
+            param("range", "100", "1000000");
+        }
+
+        @Override
+        protected void setup(Map<String, String> params) {
+            int range = Integer.parseInt(params.get("range"));
+            Random random = new Random(42);
+            for (int i = 0; i < BATCH; i++) {
+                values[i] = BASE_CENTS + random.nextInt(range);
+            }
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) {
+            for (int value : values) {
+                bh.consume(PriceFactory.makePrice(value));
+            }
+        }
+    }
+
+    /** PriceFactory.makePrice(String) of text such as "$1,234.56". */
+    private static final class FromString extends Benchmark {
+        private final String[] values = new String[BATCH];
+
+        FromString() {
+            super("PriceFactory.makePrice(String)");
+            param("range", "100", "1000000");
+        }
+
+        @Override
+        protected void setup(Map<String, String> params) {
+            int range = Integer.parseInt(params.get("range"));
+            Random random = new Random(42);
+            for (int i = 0; i < BATCH; i++) {
+                int cents = BASE_CENTS + random.nextInt(range);
+                values[i] = String.format("$%,d.%02d", cents / 100, cents % 100);
+            }
+        }
+
+        @Override
+        protected int operationsPerBatch() {
+            return BATCH;
+        }
+
+        @Override
+        protected void batch(Blackhole bh) throws Exception {
+            for (String value : values) {
+                bh.consume(PriceFactory.makePrice(value));
+            }
+        }
+    }
+}
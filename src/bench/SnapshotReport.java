@@ -0,0 +1,68 @@
+package bench;
+
+import event.EventLog;
+import event.NoOpEventSink;
+import order.Order;
+import price.PriceFactory;
+import product.BookSide;
+import product.BookType;
+import product.OrderStorage;
+import product.ProductManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Times writing and restoring a snapshot of one large book.
+ * <p>
+ * Usage: java bench.SnapshotReport [orderCount] [OBJECTS|SLOTS] [file]
+ * <p>
+ * A LADDER book is filled with orderCount (default 10,000,000) non-crossing orders spread over 1000 price levels per
+ * side, then written to a snapshot file and restored from it. The restored book is snapshotted again and the two
+ * files are compared, which checks that the restore reproduced every level and order. Large books need a large heap
+ * (e.g. -Xmx4g), since the book being replaced is still live while the new one is built.
+ */
+public final class SnapshotReport {
+    private static final String[] USERS = {"ANN", "BOB", "CAT", "DOG", "EGG"};
+
+    private SnapshotReport() {}
+
+    public static void main(String[] args) throws Exception {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        OrderStorage storage = args.length > 1 ? OrderStorage.valueOf(args[1]) : OrderStorage.SLOTS;
+        Path file = Paths.get(args.length > 2 ? args[2] : "snapshot.bin");
+        Path check = file.resolveSibling(file.getFileName() + ".check");
+        EventLog.getInstance().setSink(new NoOpEventSink());
+
+        ProductManager manager = ProductManager.getInstance();
+        manager.addProduct("SNAP", BookType.LADDER, storage);
+        long start = System.nanoTime();
+        for (int i = 0; i < orderCount; i++) {
+            BookSide side = (i & 1) == 0 ? BookSide.BUY : BookSide.SELL;
+            int cents = side == BookSide.BUY ? 9000 + i % 1000 : 10001 + i % 1000;
+            manager.addOrder(new Order(USERS[i % USERS.length], "SNAP", PriceFactory.makePrice(cents), 100, side));
+        }
+        report("Build", orderCount, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        manager.writeSnapshot(file);
+        report("Write", orderCount, System.nanoTime() - start);
+        System.out.printf("Snapshot: %,d bytes (%.1f bytes/order)%n", Files.size(file),
+                Files.size(file) / (double) orderCount);
+
+        start = System.nanoTime();
+        manager.restoreSnapshot(file);
+        report("Restore", orderCount, System.nanoTime() - start);
+
+        manager.writeSnapshot(check);
+        boolean same = Files.mismatch(file, check) == -1;
+        System.out.println("Restored book matches snapshot: " + same);
+        Files.delete(check);
+        if (!same) System.exit(1);
+    }
+
+    private static void report(String phase, int orderCount, long nanos) {
+        System.out.printf("%-8s %,10.1f ms %,14.0f orders/s%n", phase, nanos / 1e6, orderCount / (nanos / 1e9));
+    }
+}
@@ -1,66 +1,218 @@
 package currentmarket;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import exceptions.DataValidationException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * This class is a singleton that uses the observer pattern. It maintains a list of observers, and filters what
  * observers want from the Current Market for what stocks. It also publishes the Current Market updates to the
  * subscribed observers.
+ * <p>
+ * By default observers are called directly on the thread that publishes the update (the matching thread). In
+ * asynchronous mode each observer instead gets its own bounded ObserverChannel, drained by a dispatcher Executor, so
+ * a slow observer falls behind on its own (with its updates conflated to the latest per symbol) without holding up
+ * matching or the other observers.
  */
 public final class CurrentMarketPublisher {
-    private static CurrentMarketPublisher instance;
+    private static final CurrentMarketPublisher instance = new CurrentMarketPublisher();
 
     private CurrentMarketPublisher() {}
 
     public static CurrentMarketPublisher getInstance() {
-        if (instance == null) {
-            instance = new CurrentMarketPublisher();
-        }
-
         return instance;
     }
 
 
-    /** &lt;Stock, List of CurrentMarketObserver implementors watching for that stock&gt; */
-    private final HashMap<String, ArrayList<CurrentMarketObserver>> filters = new HashMap<>();
+    private static final CurrentMarketObserver[] NO_OBSERVERS = new CurrentMarketObserver[0];
+
+    /**
+     * &lt;Stock, CurrentMarketObserver implementors watching for that stock&gt;. The arrays are never modified once
+     * stored: subscribing and unsubscribing swap in a new copy, so publishing can iterate without locking.
+     */
+    private final ConcurrentHashMap<String, CurrentMarketObserver[]> filters = new ConcurrentHashMap<>();
+
+    /**
+     * How updates are delivered. Switching modes swaps in a new Delivery rather than changing this one, so a publisher
+     * always sees a dispatcher, a capacity and a set of channels that belong together.
+     */
+    private static final class Delivery {
+        /** The dispatcher for asynchronous delivery, or null to deliver on the publishing thread. */
+        final Executor dispatcher;
+        final int capacity;
+
+        /** &lt;Observer, its delivery channel&gt;, used only in asynchronous mode. */
+        final ConcurrentHashMap<CurrentMarketObserver, ObserverChannel> channels = new ConcurrentHashMap<>();
+
+        Delivery(Executor dispatcher, int capacity) {
+            this.dispatcher = dispatcher;
+            this.capacity = capacity;
+        }
+    }
+
+    private volatile Delivery delivery = new Delivery(null, 0);
 
     /**
-     * Subscribe a market observer (e.g. User) to a stock by adding them to the filters HashMap.
+     * &lt;Observer, the number of entries for it in filters&gt;. Only changed while holding the publisher's lock; an
+     * observer's channel is removed when its count drops to zero.
+     */
+    private final ConcurrentHashMap<CurrentMarketObserver, Integer> subscriptionCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Switches between synchronous and asynchronous delivery. In asynchronous mode, updates are queued per observer
+     * and delivered on the dispatcher's threads (e.g. a fixed thread pool, or a virtual-thread-per-task executor).
+     * The dispatcher is not shut down by the publisher. Switching modes starts every observer with a fresh channel;
+     * updates still queued on the old channels are delivered by the old dispatcher.
+     * @param dispatcher The Executor to deliver updates on, or null to deliver synchronously on the publishing thread.
+     * @param capacity The most symbols that can have an undelivered update for any one observer; past that, the
+     * update that has been waiting longest is dropped (and counted). Ignored if dispatcher is null.
+     * @throws DataValidationException If dispatcher is non-null and capacity is less than 1.
+     */
+    public synchronized void setAsyncDelivery(Executor dispatcher, int capacity) throws DataValidationException {
+        if (dispatcher != null && capacity < 1) {
+            throw new DataValidationException("Invalid observer queue capacity");
+        }
+        delivery = new Delivery(dispatcher, capacity);
+    }
+
+    /**
+     * @param cmo A market observer.
+     * @return The asynchronous delivery counters for the observer, or null if it has not been sent anything in
+     * asynchronous mode.
+     */
+    public DeliveryStats getDeliveryStats(CurrentMarketObserver cmo) {
+        ObserverChannel channel = delivery.channels.get(cmo);
+        return channel == null ? null : channel.stats();
+    }
+
+    /**
+     * Subscribe a market observer (e.g. User) to a stock by adding them to the filters map.
      * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
      * @param cmo The market observer who wants to be subscribed to the stock.
      */
     public void subscribeCurrentMarket(String symbol, CurrentMarketObserver cmo) {
-        if (filters.containsKey(symbol)) {
-            filters.get(symbol).add(cmo);
-        } else {
-            filters.put(symbol, new ArrayList<>());
-            filters.get(symbol).add(cmo);
-        }
+        subscribeAll(symbol, List.of(cmo));
     }
 
     /**
-     * Unsubscribe a market observer (e.g. User) to a stock by removing them from the filters HashMap.
+     * Unsubscribe a market observer (e.g. User) to a stock by removing them from the filters map.
      * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
      * @param cmo The market observer who wants to be unsubscribed from the stock.
      */
-    public void unSubscribeCurrentMarket(String symbol, CurrentMarketObserver cmo) {
-        if (filters.containsKey(symbol)) {
-            filters.get(symbol).remove(cmo);
+    public synchronized void unSubscribeCurrentMarket(String symbol, CurrentMarketObserver cmo) {
+        CurrentMarketObserver[] observers = filters.get(symbol);
+        if (observers == null) return;
+        for (int i = 0; i < observers.length; i++) {
+            if (observers[i] == cmo) {
+                if (observers.length == 1) {
+                    filters.remove(symbol);
+                } else {
+                    CurrentMarketObserver[] updated = new CurrentMarketObserver[observers.length - 1];
+                    System.arraycopy(observers, 0, updated, 0, i);
+                    System.arraycopy(observers, i + 1, updated, i, observers.length - i - 1);
+                    filters.put(symbol, updated);
+                }
+                unsubscribed(cmo);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Subscribe several market observers to a stock with a single copy of the stock's observer array.
+     * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param observers The market observers who want to be subscribed to the stock.
+     */
+    public synchronized void subscribeAll(String symbol, Collection<? extends CurrentMarketObserver> observers) {
+        if (observers.isEmpty()) return;
+        CurrentMarketObserver[] added = observers.toArray(NO_OBSERVERS);
+        for (CurrentMarketObserver cmo : added) {
+            subscriptionCounts.merge(cmo, 1, Integer::sum);
+        }
+        filters.merge(symbol, added, (existing, more) -> {
+            CurrentMarketObserver[] updated = Arrays.copyOf(existing, existing.length + more.length);
+            System.arraycopy(more, 0, updated, existing.length, more.length);
+            return updated;
+        });
+    }
+
+    /**
+     * Unsubscribe several market observers from a stock with a single copy of the stock's observer array.
+     * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param observers The market observers who want to be unsubscribed from the stock.
+     */
+    public synchronized void unSubscribeAll(String symbol, Collection<? extends CurrentMarketObserver> observers) {
+        if (observers.isEmpty()) return;
+        CurrentMarketObserver[] existing = filters.get(symbol);
+        if (existing == null) return;
+        Set<CurrentMarketObserver> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(observers);
+        CurrentMarketObserver[] updated = new CurrentMarketObserver[existing.length];
+        int count = 0;
+        for (CurrentMarketObserver cmo : existing) {
+            if (!removed.contains(cmo)) updated[count++] = cmo;
+        }
+        if (count == existing.length) return;
+        if (count == 0) {
+            filters.remove(symbol);
+        } else {
+            filters.put(symbol, Arrays.copyOf(updated, count));
+        }
+        for (CurrentMarketObserver cmo : existing) {
+            if (removed.contains(cmo)) unsubscribed(cmo);
         }
     }
 
     /**
-     * Accept a current market update from the ProductBook and pass it on to the market observers.
+     * Counts off one of the observer's subscriptions, and drops its channel once it has none left.
+     */
+    private void unsubscribed(CurrentMarketObserver cmo) {
+        if (subscriptionCounts.merge(cmo, -1, (count, minus) -> count == 1 ? null : count + minus) == null) {
+            delivery.channels.remove(cmo);
+        }
+    }
+
+    /**
+     * Accept a current market update from the ProductBook and pass it on to the market observers, either directly or
+     * through their ObserverChannels in asynchronous mode.
      * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
      * @param buySide CurrentMarketSide object representing the buy side of the market.
      * @param sellSide CurrentMarketSide object representing the sell side of the market.
      */
     public void acceptCurrentMarket(String symbol, CurrentMarketSide buySide, CurrentMarketSide sellSide) {
-        if (filters.containsKey(symbol)) {
-            filters.get(symbol).forEach(currentMarketObserver ->
-                    currentMarketObserver.updateCurrentMarket(symbol, buySide, sellSide));
+        CurrentMarketObserver[] observers = filters.get(symbol);
+        if (observers == null) return;
+
+        Delivery current = delivery;
+        if (current.dispatcher == null) {
+            for (CurrentMarketObserver currentMarketObserver : observers) {
+                currentMarketObserver.updateCurrentMarket(symbol, buySide, sellSide);
+            }
+        } else {
+            for (CurrentMarketObserver currentMarketObserver : observers) {
+                channelFor(currentMarketObserver, current).offer(symbol, buySide, sellSide);
+            }
+        }
+    }
+
+    private ObserverChannel channelFor(CurrentMarketObserver cmo, Delivery current) {
+        ObserverChannel channel = current.channels.get(cmo);
+        if (channel == null) {
+            channel = current.channels.computeIfAbsent(cmo,
+                    o -> new ObserverChannel(o, current.dispatcher, current.capacity));
+            // The observer may have unsubscribed since this update read its filter; don't leave a channel behind.
+            if (!subscriptionCounts.containsKey(cmo)) {
+                current.channels.remove(cmo, channel);
+            }
         }
+        return channel;
     }
 
 }
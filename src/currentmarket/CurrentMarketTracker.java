@@ -1,54 +1,148 @@
 package currentmarket;
 
+import event.EventLog;
+import exceptions.DataValidationException;
 import price.Price;
-import exceptions.InvalidPriceOperation;
 import price.PriceFactory;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * A singleton that receives updates from the ProductBooks, and sends the information on to the CurrentMarketPublisher.
+ * <p>
+ * An update is only published if the top of book (price and volume on both sides) differs from what was last
+ * published for that symbol; e.g. adding an order deep in the book publishes nothing. Optionally, updates can also be
+ * conflated: the tracker then only records the latest top of book per symbol, and publishes it when flush() is called
+ * or, if a conflation interval is set, every interval. A burst of changes to one symbol then costs one publication.
  */
 public final class CurrentMarketTracker {
-    private static CurrentMarketTracker instance;
+    private static final CurrentMarketTracker instance = new CurrentMarketTracker();
+
+    /** &lt;symbol, last published and latest top of book&gt; */
+    private final ConcurrentHashMap<String, MarketState> markets = new ConcurrentHashMap<>();
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder suppressedCount = new LongAdder();
+
+    private volatile boolean conflating;
+    private ScheduledExecutorService flusher;
 
     private CurrentMarketTracker() {}
 
     public static CurrentMarketTracker getInstance() {
-        if (instance == null) {
-            instance = new CurrentMarketTracker();
-        }
-
         return instance;
     }
 
     /**
      * This method is called by the ProductBook when a change occurs to the market.
      * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
-     * @param buyPrice The current buy price of the stock.
+     * @param buyPrice The current buy price of the stock, or null if there are no buy orders.
+     * @param buyVolume The current buy volume of the stock.
+     * @param sellPrice The current sell price of the stock, or null if there are no sell orders.
+     * @param sellVolume The current sell volume of the stock.
+     */
+    public void updateMarket(String symbol, Price buyPrice, int buyVolume, Price sellPrice, int sellVolume) {
+        updateMarket(symbol, buyPrice == null ? 0 : buyPrice.getCents(), buyPrice == null ? 0 : buyVolume,
+                sellPrice == null ? 0 : sellPrice.getCents(), sellPrice == null ? 0 : sellVolume);
+    }
+
+    /**
+     * This method is called by the ProductBook when a change occurs to the market. Prices are passed as primitive
+     * cents; Price objects are only made when an update is actually published, for the CurrentMarketSides handed to
+     * observers. A side with no volume has no orders, and is reported at $0.00. Published updates are also reported
+     * to the EventLog as CURRENT_MARKET events.
+     * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param buyCents The current buy price of the stock in cents.
      * @param buyVolume The current buy volume of the stock.
-     * @param sellPrice The current sell price of the stock.
+     * @param sellCents The current sell price of the stock in cents.
      * @param sellVolume The current sell volume of the stock.
-     * @throws InvalidPriceOperation If a created price is null or not a number.
      */
-    public void updateMarket(String symbol, Price buyPrice, int buyVolume, Price sellPrice, int sellVolume)
-            throws InvalidPriceOperation {
-
-        Price marketWidth;
-        if (buyPrice == null) {
-            buyPrice = PriceFactory.makePrice(0);
-            marketWidth = PriceFactory.makePrice(0);
-        } else if (sellPrice == null) {
-            sellPrice = PriceFactory.makePrice(0);
-            marketWidth = PriceFactory.makePrice(0);
-        } else {
-            marketWidth = sellPrice.subtract(buyPrice);
-        }
-
-        CurrentMarketSide buySide = new CurrentMarketSide(buyPrice, buyVolume);
-        CurrentMarketSide sellSide = new CurrentMarketSide(sellPrice, sellVolume);
-
-        System.out.println("*********** Current Market ***********");
-        System.out.println("* " + symbol + "   " + buySide + " - " + sellSide + " [" + marketWidth + "]");
-        System.out.println("**************************************");
+    public void updateMarket(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume) {
+        if (buyVolume == 0) buyCents = 0;
+        if (sellVolume == 0) sellCents = 0;
+
+        MarketState state = markets.get(symbol);
+        if (state == null) {
+            state = markets.computeIfAbsent(symbol, MarketState::new);
+        }
+        if (!state.update(buyCents, buyVolume, sellCents, sellVolume)) {
+            suppressedCount.increment();
+            return;
+        }
+        if (!conflating) {
+            state.publishIfPending(this);
+        }
+    }
+
+    /**
+     * Turns conflation on or off. While conflating, updateMarket only records the latest top of book and nothing is
+     * published until flush() (or the interval timer, if intervalMicros is positive). Turning conflation off flushes
+     * whatever is pending.
+     * @param enabled True to conflate updates, false to publish each change as it happens.
+     * @param intervalMicros How often to flush automatically while conflating, in microseconds; 0 to only flush when
+     * flush() is called.
+     * @throws DataValidationException If intervalMicros is negative.
+     */
+    public synchronized void setConflation(boolean enabled, long intervalMicros) throws DataValidationException {
+        if (intervalMicros < 0) {
+            throw new DataValidationException("Invalid conflation interval");
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        conflating = enabled;
+        if (enabled && intervalMicros > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "current-market-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleAtFixedRate(this::flush, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+        }
+        if (!enabled) {
+            flush();
+        }
+    }
+
+    /**
+     * Publishes the latest top of book of every symbol that has changed since it was last published, e.g. at the end
+     * of a batch of orders.
+     */
+    public void flush() {
+        for (MarketState state : markets.values()) {
+            state.publishIfPending(this);
+        }
+    }
+
+    /**
+     * @return The number of updates published to observers.
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return The number of updates dropped because they did not change the top of book.
+     */
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    /**
+     * Reports one top of book to the EventLog and the CurrentMarketPublisher. Called by MarketState, which holds its
+     * own monitor while this runs.
+     */
+    void publish(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume) {
+        publishedCount.increment();
+        CurrentMarketSide buySide = new CurrentMarketSide(PriceFactory.makePrice((int) buyCents), buyVolume);
+        CurrentMarketSide sellSide = new CurrentMarketSide(PriceFactory.makePrice((int) sellCents), sellVolume);
+
+        EventLog.getInstance().getSink().currentMarket(symbol, buyCents, buyVolume, sellCents, sellVolume);
 
         CurrentMarketPublisher.getInstance().acceptCurrentMarket(symbol, buySide, sellSide);
     }
@@ -0,0 +1,41 @@
+package currentmarket;
+
+/**
+ * A point-in-time copy of the asynchronous delivery counters for one CurrentMarketObserver (see
+ * CurrentMarketPublisher.setAsyncDelivery).
+ */
+public final class DeliveryStats {
+    /** Updates handed to the observer. */
+    public final long delivered;
+
+    /** Updates replaced by a newer update for the same symbol before the observer got to them. */
+    public final long conflated;
+
+    /** Pending updates evicted, oldest first, to make room for other symbols when the observer's queue was full. */
+    public final long dropped;
+
+    /** Symbols with an update waiting to be delivered. */
+    public final int pending;
+
+    /** How long the most recently delivered update waited between publication and delivery, in nanoseconds. */
+    public final long lastLagNanos;
+
+    /** The longest any delivered update waited between publication and delivery, in nanoseconds. */
+    public final long maxLagNanos;
+
+    public DeliveryStats(long delivered, long conflated, long dropped, int pending, long lastLagNanos,
+                         long maxLagNanos) {
+        this.delivered = delivered;
+        this.conflated = conflated;
+        this.dropped = dropped;
+        this.pending = pending;
+        this.lastLagNanos = lastLagNanos;
+        this.maxLagNanos = maxLagNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Delivered: " + delivered + ", Conflated: " + conflated + ", Dropped: " + dropped + ", Pending: "
+                + pending + ", Last Lag: " + lastLagNanos + "ns, Max Lag: " + maxLagNanos + "ns";
+    }
+}
@@ -0,0 +1,59 @@
+package currentmarket;
+
+/**
+ * MarketState holds, for one symbol, the top of book last published to observers and the latest top of book reported
+ * by the ProductBook. The CurrentMarketTracker compares the two to suppress updates that change nothing, and, when
+ * conflating, holds the latest values here until the next flush. Guarded by its own monitor, since the book's
+ * matching thread and the tracker's flush thread can both touch it.
+ */
+final class MarketState {
+    final String symbol;
+
+    private boolean everPublished;
+    private long publishedBuyCents;
+    private int publishedBuyVolume;
+    private long publishedSellCents;
+    private int publishedSellVolume;
+
+    private boolean pending;
+    private long latestBuyCents;
+    private int latestBuyVolume;
+    private long latestSellCents;
+    private int latestSellVolume;
+
+    MarketState(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Records the latest top of book from the ProductBook.
+     * @return True if it differs from what was last published.
+     */
+    synchronized boolean update(long buyCents, int buyVolume, long sellCents, int sellVolume) {
+        latestBuyCents = buyCents;
+        latestBuyVolume = buyVolume;
+        latestSellCents = sellCents;
+        latestSellVolume = sellVolume;
+        pending = !everPublished || buyCents != publishedBuyCents || buyVolume != publishedBuyVolume
+                || sellCents != publishedSellCents || sellVolume != publishedSellVolume;
+        return pending;
+    }
+
+    /**
+     * If the latest top of book has not been published yet, marks it published and passes it to the tracker. The
+     * tracker publishes while this state's monitor is held, so updates for one symbol are never delivered out of
+     * order, whichever thread publishes them.
+     * @return True if an update was published.
+     */
+    synchronized boolean publishIfPending(CurrentMarketTracker tracker) {
+        if (!pending) return false;
+        pending = false;
+        everPublished = true;
+        publishedBuyCents = latestBuyCents;
+        publishedBuyVolume = latestBuyVolume;
+        publishedSellCents = latestSellCents;
+        publishedSellVolume = latestSellVolume;
+        tracker.publish(symbol, latestBuyCents, latestBuyVolume, latestSellCents, latestSellVolume);
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package currentmarket;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An ObserverChannel delivers current market updates to one CurrentMarketObserver on a dispatcher thread instead of
+ * the matching thread, so a slow observer only ever delays itself.
+ * <p>
+ * Each channel keeps at most one pending update per symbol: if a newer update for a symbol arrives before the last
+ * one was delivered, the older one is replaced (conflated), so an observer that falls behind skips straight to the
+ * latest market. The queue of symbols with a pending update is bounded; once it is full, a new symbol evicts the one
+ * that has been pending longest, whose update is dropped and counted, so the newest update is always kept. At most one dispatcher thread drains a channel at a time, so each observer still sees its
+ * updates one at a time and, per symbol, in order.
+ */
+final class ObserverChannel {
+    /** The most updates delivered in one dispatch before the channel yields its thread to other observers. */
+    private static final int MAX_BATCH = 64;
+
+    private static final class Update {
+        final CurrentMarketSide buySide;
+        final CurrentMarketSide sellSide;
+        final long enqueueNanos;
+
+        Update(CurrentMarketSide buySide, CurrentMarketSide sellSide, long enqueueNanos) {
+            this.buySide = buySide;
+            this.sellSide = sellSide;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    final CurrentMarketObserver observer;
+    private final Executor dispatcher;
+
+    /** &lt;symbol, latest undelivered update&gt; */
+    private final ConcurrentHashMap<String, Update> latest = new ConcurrentHashMap<>();
+
+    /** Symbols with an update in latest, in the order they became pending. */
+    private final ArrayBlockingQueue<String> pendingSymbols;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long lastLagNanos;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    ObserverChannel(CurrentMarketObserver observer, Executor dispatcher, int capacity) {
+        this.observer = observer;
+        this.dispatcher = dispatcher;
+        pendingSymbols = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues an update for delivery, replacing any undelivered update for the same symbol. If the queue is full, the
+     * update for the symbol that has been pending longest is dropped to make room.
+     */
+    void offer(String symbol, CurrentMarketSide buySide, CurrentMarketSide sellSide) {
+        Update previous = latest.put(symbol, new Update(buySide, sellSide, System.nanoTime()));
+        if (previous != null) {
+            conflated.increment();
+        } else {
+            while (!pendingSymbols.offer(symbol)) {
+                String oldest = pendingSymbols.poll();
+                if (oldest != null && latest.remove(oldest) != null) {
+                    dropped.increment();
+                }
+            }
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (!pendingSymbols.isEmpty() && scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < MAX_BATCH; i++) {
+                String symbol = pendingSymbols.poll();
+                if (symbol == null) break;
+                Update update = latest.remove(symbol);
+                if (update == null) continue;
+
+                observer.updateCurrentMarket(symbol, update.buySide, update.sellSide);
+
+                long lag = System.nanoTime() - update.enqueueNanos;
+                lastLagNanos = lag;
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+                delivered.increment();
+            }
+        } finally {
+            scheduled.set(false);
+            schedule();
+        }
+    }
+
+    DeliveryStats stats() {
+        return new DeliveryStats(delivered.sum(), conflated.sum(), dropped.sum(), pendingSymbols.size(),
+                lastLagNanos, maxLagNanos.get());
+    }
+}
@@ -0,0 +1,162 @@
+package event;
+
+import order.Order;
+import product.BookSide;
+import ring.RingBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An EventSink that moves formatting and I/O off the matching path. Each event's fields are copied into a
+ * pre-allocated slot of a RingBuffer; a background writer thread drains the ring, formats the events in the same text
+ * as the ConsoleEventSink, and writes them to a file in large batches.
+ * <p>
+ * Publishing an event allocates nothing and takes no locks. If the writer falls a full ring behind, producers wait
+ * for it rather than dropping events.
+ * <p>
+ * If a write fails, the writer keeps draining the ring but discards (and counts) every event from then on, so
+ * producers are never left waiting on a dead writer. The failure is reported by getFailure() and rethrown by close().
+ */
+public final class AsyncFileEventSink implements EventSink {
+    private static final int MAX_BATCH = 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final RingBuffer<BookEvent> ring;
+    private final FileChannel channel;
+    private final Thread writer;
+
+    /** Written to only by the writer thread. */
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+    private final RingBuffer.Handler<BookEvent> formatter = this::write;
+
+    /** Events in writeBuffer that have not been written out yet. Only used by the writer thread. */
+    private int bufferedEvents;
+
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    private volatile long discardedCount;
+
+    /**
+     * Creates the sink and starts its writer thread. The file is created if needed and appended to.
+     * @param file The file to write events to.
+     * @param capacity The number of events that can be buffered. Must be a power of two.
+     * @throws IOException If the file cannot be opened.
+     */
+    public AsyncFileEventSink(Path file, int capacity) throws IOException {
+        ring = new RingBuffer<>(capacity, BookEvent::new);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        writer = new Thread(this::runWriter, "event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void orderEvent(EventType type, BookSide side, int volume, Order order) {
+        long sequence = ring.next();
+        ring.get(sequence).setOrderEvent(type, side, volume, order);
+        ring.publish(sequence);
+    }
+
+    @Override
+    public void currentMarket(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume) {
+        long sequence = ring.next();
+        ring.get(sequence).setCurrentMarket(symbol, buyCents, buyVolume, sellCents, sellVolume);
+        ring.publish(sequence);
+    }
+
+    /**
+     * @return The error that stopped the writer from writing, or null if every write so far has succeeded.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return The number of events lost because of the failure reported by getFailure(): those still buffered when
+     * the write failed and every event published after it.
+     */
+    public long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * Stops the writer once every event published so far has been written (or discarded), then closes the file.
+     * @throws UncheckedIOException If a write failed while the sink was running, or the file cannot be closed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            if (failure == null) throw new UncheckedIOException(e);
+            failure.addSuppressed(e);
+        }
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Event writer failed; " + discardedCount + " events discarded", e);
+        }
+    }
+
+    private void runWriter() {
+        while (running || ring.size() > 0) {
+            if (ring.drain(formatter, MAX_BATCH) == 0) {
+                flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Formats one event into the write buffer, writing the buffer out when it fills up or the batch ends.
+     */
+    private void write(BookEvent event, long sequence, boolean endOfBatch) {
+        if (failure != null) {
+            discardedCount++;
+            return;
+        }
+        line.setLength(0);
+        event.appendTo(line);
+        for (int i = 0; i < line.length(); i++) {
+            if (!writeBuffer.hasRemaining()) flush();
+            writeBuffer.put((byte) line.charAt(i));
+        }
+        bufferedEvents++;
+        if (endOfBatch) flush();
+    }
+
+    /**
+     * Writes out the write buffer. Once a write has failed, the failure is recorded and the buffer is emptied
+     * instead, with the events in it counted as discarded.
+     */
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            while (failure == null && writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (failure != null) {
+            discardedCount += bufferedEvents;
+        }
+        writeBuffer.clear();
+        bufferedEvents = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package event;
+
+import order.Order;
+import order.OrderId;
+import product.BookSide;
+
+/**
+ * A BookEvent is a mutable copy of the fields of one event, so the event can be formatted later (and on another
+ * thread) without holding on to the Order it came from. Sinks reuse BookEvents rather than allocating one per event.
+ */
+final class BookEvent {
+    EventType type;
+    BookSide side;
+    int volume;
+
+    String user;
+    String product;
+    long priceCents;
+    int originalVolume;
+    int remainingVolume;
+    int filledVolume;
+    int cancelledVolume;
+    long id;
+
+    long buyCents;
+    int buyVolume;
+    long sellCents;
+    int sellVolume;
+
+    void setOrderEvent(EventType type, BookSide side, int volume, Order order) {
+        this.type = type;
+        this.side = side;
+        this.volume = volume;
+        user = order.getUser();
+        product = order.getProduct();
+        priceCents = order.getPrice().getCents();
+        originalVolume = order.getOriginalVolume();
+        remainingVolume = order.getRemainingVolume();
+        filledVolume = order.getFilledVolume();
+        cancelledVolume = order.getCancelledVolume();
+        id = order.getId();
+    }
+
+    void setCurrentMarket(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume) {
+        type = EventType.CURRENT_MARKET;
+        product = symbol;
+        this.buyCents = buyCents;
+        this.buyVolume = buyVolume;
+        this.sellCents = sellCents;
+        this.sellVolume = sellVolume;
+    }
+
+    /**
+     * Appends this event as it appears in the console log, including the trailing newline(s).
+     * <p>
+     * Example output:
+     * ADD: BUY: ANN order: BUY WMT at $140.20, Orig Vol: 65, Rem Vol: 65, Fill Vol: 0, CXL Vol: 0, ID: ...
+     * FILL: (SELL 40) BOB order: SELL WMT at $140.10, Orig Vol: 40, Rem Vol: 0, Fill Vol: 40, CXL Vol: 0, ID: ...
+     * CANCEL: BUY Order: WMT-1042 Cxl Qty: 65
+     */
+    void appendTo(StringBuilder s) {
+        switch (type) {
+            case ADD:
+                s.append("ADD: ").append(side).append(": ");
+                appendOrder(s);
+                break;
+            case FILL:
+                s.append("FILL: (").append(side).append(' ').append(volume).append(") ");
+                appendOrder(s);
+                break;
+            case PARTIAL_FILL:
+                s.append("PARTIAL FILL: (").append(side).append(' ').append(volume).append(") ");
+                appendOrder(s);
+                break;
+            case CANCEL:
+                s.append("CANCEL: ").append(side).append(" Order: ");
+                OrderId.appendTo(s, id);
+                s.append(" Cxl Qty: ").append(cancelledVolume);
+                break;
+            case CURRENT_MARKET:
+                long widthCents = buyVolume == 0 || sellVolume == 0 ? 0 : sellCents - buyCents;
+                s.append("*********** Current Market ***********\n");
+                s.append("* ").append(product).append("   ");
+                appendPrice(s, buyCents);
+                s.append('x').append(buyVolume).append(" - ");
+                appendPrice(s, sellCents);
+                s.append('x').append(sellVolume).append(" [");
+                appendPrice(s, widthCents);
+                s.append("]\n");
+                s.append("**************************************");
+                break;
+        }
+        s.append('\n');
+    }
+
+    /**
+     * Appends the order fields in the same format as Order.toString().
+     */
+    private void appendOrder(StringBuilder s) {
+        s.append(user).append(" order: ").append(side).append(' ').append(product).append(" at ");
+        appendPrice(s, priceCents);
+        s.append(", Orig Vol: ").append(originalVolume).append(", Rem Vol: ").append(remainingVolume)
+                .append(", Fill Vol: ").append(filledVolume).append(", CXL Vol: ").append(cancelledVolume)
+                .append(", ID: ");
+        OrderId.appendTo(s, id);
+    }
+
+    /**
+     * Appends a price in cents in the same format as Price.toString(), e.g. $98.10 or $-0.05.
+     */
+    static void appendPrice(StringBuilder s, long cents) {
+        long abs = Math.abs(cents);
+        s.append('$');
+        if (cents < 0) s.append('-');
+        s.append(abs / 100).append('.');
+        if (abs % 100 < 10) s.append('0');
+        s.append(abs % 100);
+    }
+}
@@ -0,0 +1,32 @@
+package event;
+
+import order.Order;
+import product.BookSide;
+
+/**
+ * An EventSink that prints each event to System.out as soon as it happens. This is the default sink, and it prints
+ * exactly what the book used to print directly.
+ */
+public final class ConsoleEventSink implements EventSink {
+    private final BookEvent event = new BookEvent();
+    private final StringBuilder line = new StringBuilder();
+
+    @Override
+    public synchronized void orderEvent(EventType type, BookSide side, int volume, Order order) {
+        event.setOrderEvent(type, side, volume, order);
+        print();
+    }
+
+    @Override
+    public synchronized void currentMarket(String symbol, long buyCents, int buyVolume, long sellCents,
+                                           int sellVolume) {
+        event.setCurrentMarket(symbol, buyCents, buyVolume, sellCents, sellVolume);
+        print();
+    }
+
+    private void print() {
+        line.setLength(0);
+        event.appendTo(line);
+        System.out.print(line);
+    }
+}
@@ -0,0 +1,35 @@
+package event;
+
+import exceptions.DataValidationException;
+
+/**
+ * A singleton that holds the EventSink the book reports its events to. The sink can be swapped at any time, e.g. for
+ * a NoOpEventSink in benchmarks or an AsyncFileEventSink under load; it defaults to a ConsoleEventSink.
+ */
+public final class EventLog {
+    private static final EventLog instance = new EventLog();
+
+    private volatile EventSink sink = new ConsoleEventSink();
+
+    private EventLog() {}
+
+    public static EventLog getInstance() {
+        return instance;
+    }
+
+    public EventSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Replaces the current sink. The old sink is not closed; that is up to whoever created it.
+     * @param sink The sink that should receive all future events.
+     * @throws DataValidationException If sink is null.
+     */
+    public void setSink(EventSink sink) throws DataValidationException {
+        if (sink == null) {
+            throw new DataValidationException("Invalid setSink parameter");
+        }
+        this.sink = sink;
+    }
+}
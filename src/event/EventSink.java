@@ -0,0 +1,38 @@
+package event;
+
+import order.Order;
+import product.BookSide;
+
+/**
+ * An EventSink receives the events produced while orders are matched (ADD, FILL, PARTIAL FILL, CANCEL and CURRENT
+ * MARKET) and decides what to do with them: print them, write them to a file, or drop them.
+ * <p>
+ * Both methods are called on the matching path, so implementations should return quickly and must not keep a
+ * reference to the Order passed in; its fields keep changing after the call.
+ */
+public interface EventSink extends AutoCloseable {
+    /**
+     * Reports an ADD, FILL, PARTIAL_FILL or CANCEL of an order.
+     * @param type The kind of event.
+     * @param side The side of the book the event happened on.
+     * @param volume The volume traded for FILL and PARTIAL_FILL events; ignored otherwise.
+     * @param order The order, with its volumes already updated for this event.
+     */
+    void orderEvent(EventType type, BookSide side, int volume, Order order);
+
+    /**
+     * Reports a CURRENT_MARKET update. An empty side has a price and volume of 0.
+     * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param buyCents The top buy price in cents.
+     * @param buyVolume The volume at the top buy price.
+     * @param sellCents The top sell price in cents.
+     * @param sellVolume The volume at the top sell price.
+     */
+    void currentMarket(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume);
+
+    /**
+     * Writes out anything still buffered and releases the sink's resources. The default does nothing.
+     */
+    @Override
+    default void close() {}
+}
@@ -0,0 +1,8 @@
+package event;
+
+/**
+ * The kinds of events the book reports to the EventSink.
+ */
+public enum EventType {
+    ADD, FILL, PARTIAL_FILL, CANCEL, CURRENT_MARKET
+}
@@ -0,0 +1,15 @@
+package event;
+
+import order.Order;
+import product.BookSide;
+
+/**
+ * An EventSink that discards every event, for benchmarks that should measure matching alone.
+ */
+public final class NoOpEventSink implements EventSink {
+    @Override
+    public void orderEvent(EventType type, BookSide side, int volume, Order order) {}
+
+    @Override
+    public void currentMarket(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume) {}
+}
@@ -0,0 +1,25 @@
+package gateway;
+
+import order.OrderDTO;
+
+/**
+ * Receives the outcome of each command submitted to an OrderGateway. Called on the gateway's consumer thread (or on a
+ * matching shard thread if the ProductManager is running sharded), so implementations should return quickly.
+ */
+public interface GatewayListener {
+    /**
+     * @param added The OrderDTO of an order that was accepted by its book.
+     */
+    default void onAdded(OrderDTO added) {}
+
+    /**
+     * @param orderId The id that was submitted for cancellation.
+     * @param cancelled The OrderDTO of the cancelled order, or null if the cancel failed.
+     */
+    default void onCancelled(long orderId, OrderDTO cancelled) {}
+
+    /**
+     * @param reason Why an add could not be processed (e.g. a DataValidationException for a bad user or volume).
+     */
+    default void onRejected(Throwable reason) {}
+}
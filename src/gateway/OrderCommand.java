@@ -0,0 +1,28 @@
+package gateway;
+
+import product.BookSide;
+
+/**
+ * An OrderCommand is one slot of the OrderGateway's ring buffer: the fields of an inbound add or cancel, copied in by
+ * the producer and read back out by the matching consumer. Slots are reused, so nothing here may be kept past the
+ * command's processing.
+ */
+final class OrderCommand {
+    enum Type {
+        ADD, CANCEL
+    }
+
+    Type type;
+
+    String user;
+    String product;
+    int priceCents;
+    int volume;
+    BookSide side;
+
+    /** The id of the order to cancel, for CANCEL commands. */
+    long orderId;
+
+    /** System.nanoTime() when the producer published the command. */
+    long enqueueNanos;
+}
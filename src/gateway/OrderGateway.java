@@ -0,0 +1,175 @@
+package gateway;
+
+import exceptions.DataValidationException;
+import order.Order;
+import order.OrderPool;
+import price.PriceFactory;
+import product.BookSide;
+import product.ProductManager;
+import ring.RingBuffer;
+import ring.WaitStrategy;
+
+/**
+ * The OrderGateway sits in front of the ProductManager and decouples order entry from matching. Any number of
+ * producer threads submit adds and cancels into a pre-allocated RingBuffer, which costs a sequence claim and a few
+ * field writes and allocates nothing. A single consumer thread drains the ring in batches and hands each command to
+ * the ProductManager (or to its matching shards, if it is running sharded).
+ * <p>
+ * The consumer also times how long each command waited in the ring, so queueing delay can be measured separately
+ * from matching.
+ * <p>
+ * Orders are acquired from an OrderPool sized like the ring, and released back to it by the books once they are
+ * filled or cancelled, so a steady flow of adds does not allocate new Orders.
+ */
+public final class OrderGateway implements AutoCloseable {
+    private static final int MAX_BATCH = 256;
+
+    private final RingBuffer<OrderCommand> ring;
+    private final OrderPool orderPool;
+    private final GatewayListener listener;
+    private final Thread consumer;
+    private final RingBuffer.Handler<OrderCommand> dispatcher = this::dispatch;
+
+    private volatile boolean running = true;
+
+    // Written only by the consumer thread.
+    private volatile long processedCount;
+    private volatile long totalQueueNanos;
+    private volatile long maxQueueNanos;
+
+    /**
+     * Creates the gateway and starts its consumer thread.
+     * @param capacity The number of commands that can be queued. Must be a power of two.
+     * @param waitStrategy How the consumer waits when the ring is empty (e.g. BusySpinWaitStrategy,
+     * YieldingWaitStrategy or BlockingWaitStrategy).
+     * @param listener Receives the outcome of every command.
+     */
+    public OrderGateway(int capacity, WaitStrategy waitStrategy, GatewayListener listener) {
+        ring = new RingBuffer<>(capacity, OrderCommand::new, waitStrategy);
+        try {
+            orderPool = new OrderPool(capacity);
+        } catch (DataValidationException e) {
+            // The RingBuffer has already rejected any capacity below 1.
+            throw new IllegalArgumentException(e);
+        }
+        this.listener = listener;
+        consumer = new Thread(this::runConsumer, "order-gateway");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Queues a new order. The order is validated and created on the consumer thread; a rejection is reported through
+     * GatewayListener.onRejected.
+     * @param user A 3 letter user code.
+     * @param product A 1-5 letter stock symbol.
+     * @param priceCents The order price in cents.
+     * @param volume The quantity of the order.
+     * @param side BUY or SELL.
+     */
+    public void submitAdd(String user, String product, int priceCents, int volume, BookSide side) {
+        long sequence = ring.next();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.ADD;
+        command.user = user;
+        command.product = product;
+        command.priceCents = priceCents;
+        command.volume = volume;
+        command.side = side;
+        command.orderId = 0;
+        command.enqueueNanos = System.nanoTime();
+        ring.publish(sequence);
+    }
+
+    /**
+     * Queues a cancel of a resting order.
+     * @param orderId The id of the order to cancel.
+     */
+    public void submitCancel(long orderId) {
+        long sequence = ring.next();
+        OrderCommand command = ring.get(sequence);
+        command.type = OrderCommand.Type.CANCEL;
+        command.user = null;
+        command.product = null;
+        command.orderId = orderId;
+        command.enqueueNanos = System.nanoTime();
+        ring.publish(sequence);
+    }
+
+    /**
+     * @return The number of commands the consumer has taken off the ring.
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * @return The average time, in nanoseconds, a command spent in the ring before the consumer picked it up.
+     */
+    public long getMeanQueueNanos() {
+        long count = processedCount;
+        return count == 0 ? 0 : totalQueueNanos / count;
+    }
+
+    /**
+     * @return The longest time, in nanoseconds, any command spent in the ring before the consumer picked it up.
+     */
+    public long getMaxQueueNanos() {
+        return maxQueueNanos;
+    }
+
+    /**
+     * Stops the consumer once every command submitted so far has been handed to the ProductManager. If the calling
+     * thread is interrupted while waiting, this returns early with the thread's interrupt flag set, and the consumer
+     * finishes draining the ring on its own.
+     */
+    @Override
+    public void close() {
+        running = false;
+        ring.alert();
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runConsumer() {
+        while (running || ring.size() > 0) {
+            if (ring.drain(dispatcher, MAX_BATCH) == 0) {
+                ring.waitForPublished();
+            }
+        }
+    }
+
+    private void dispatch(OrderCommand command, long sequence, boolean endOfBatch) {
+        long queueNanos = System.nanoTime() - command.enqueueNanos;
+        processedCount++;
+        totalQueueNanos += queueNanos;
+        if (queueNanos > maxQueueNanos) maxQueueNanos = queueNanos;
+
+        if (command.type == OrderCommand.Type.ADD) {
+            Order order;
+            try {
+                order = orderPool.acquire(command.user, command.product,
+                        PriceFactory.makePrice(command.priceCents), command.volume, command.side);
+            } catch (Exception e) {
+                listener.onRejected(e);
+                return;
+            }
+            ProductManager.getInstance().addOrderAsync(order).whenComplete((added, error) -> {
+                if (error == null) {
+                    listener.onAdded(added);
+                } else {
+                    // The order never reached a book, so nothing else will release it.
+                    order.release();
+                    listener.onRejected(error);
+                }
+            });
+        } else {
+            long orderId = command.orderId;
+            ProductManager.getInstance().cancelAsync(orderId)
+                    .thenAccept(cancelled -> listener.onCancelled(orderId, cancelled));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package journal;
+
+import exceptions.DataValidationException;
+
+/**
+ * How often an OrderJournal forces its records to disk. Appending a record only writes to memory mapped from the
+ * journal file, so it survives the process crashing but not the machine; a record is only safe from a power loss once
+ * it has been forced. Forcing costs a disk flush, so records are forced in groups:
+ * <ul>
+ * <li>everyRecords(n): the thread appending every n-th record forces everything appended so far.</li>
+ * <li>everyMicros(t): a background thread forces whatever was appended every t microseconds, so appending never waits
+ * for the disk.</li>
+ * <li>never(): records are only forced by force() and close(), and otherwise reach the disk whenever the operating
+ * system writes them back.</li>
+ * </ul>
+ */
+public final class ForcePolicy {
+    private static final ForcePolicy NEVER = new ForcePolicy(0, 0);
+
+    /** Force after this many records, or 0. */
+    final int records;
+
+    /** Force this often, in microseconds, or 0. */
+    final long micros;
+
+    private ForcePolicy(int records, long micros) {
+        this.records = records;
+        this.micros = micros;
+    }
+
+    /**
+     * @param records How many records to append between forces; 1 forces every record.
+     * @return A policy that forces on the appending thread after every records records.
+     * @throws DataValidationException If records is less than 1.
+     */
+    public static ForcePolicy everyRecords(int records) throws DataValidationException {
+        if (records < 1) {
+            throw new DataValidationException("Invalid force interval");
+        }
+        return new ForcePolicy(records, 0);
+    }
+
+    /**
+     * @param micros How often to force, in microseconds.
+     * @return A policy that forces from a background thread every micros microseconds.
+     * @throws DataValidationException If micros is less than 1.
+     */
+    public static ForcePolicy everyMicros(long micros) throws DataValidationException {
+        if (micros < 1) {
+            throw new DataValidationException("Invalid force interval");
+        }
+        return new ForcePolicy(0, micros);
+    }
+
+    /**
+     * @return A policy that leaves writing records back to the operating system.
+     */
+    public static ForcePolicy never() {
+        return NEVER;
+    }
+
+    @Override
+    public String toString() {
+        if (records > 0) return "every " + records + " records";
+        if (micros > 0) return "every " + micros + "us";
+        return "never";
+    }
+}
@@ -0,0 +1,44 @@
+package journal;
+
+import product.BookSide;
+
+/**
+ * One command read back from an OrderJournal. OrderJournal.read reuses a single JournalRecord for every record it
+ * reads, so a handler must copy out anything it wants to keep.
+ */
+public final class JournalRecord {
+    public enum Type {ADD, CANCEL}
+
+    public Type type;
+
+    /** The user who placed the order; null for a CANCEL. */
+    public String user;
+
+    /** The order's stock symbol. */
+    public String product;
+
+    /** The order's price in cents; 0 for a CANCEL. */
+    public int priceCents;
+
+    /** The order's original volume; 0 for a CANCEL. */
+    public int volume;
+
+    /** The order's side; null for a CANCEL. */
+    public BookSide side;
+
+    /** The sequence number of the order's id (see OrderId), i.e. of the new order or of the order to cancel. */
+    public long sequence;
+
+    /** System.nanoTime() when the command was appended. Only comparable with other records from the same run. */
+    public long nanos;
+
+    JournalRecord() {}
+
+    @Override
+    public String toString() {
+        if (type == Type.CANCEL) {
+            return "CANCEL " + product + "-" + sequence;
+        }
+        return "ADD " + product + "-" + sequence + " " + user + " " + side + " " + volume + "@" + priceCents;
+    }
+}
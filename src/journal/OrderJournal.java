@@ -0,0 +1,382 @@
+package journal;
+
+import exceptions.DataValidationException;
+import exceptions.OrderNotFoundException;
+import order.Order;
+import order.OrderId;
+import price.PriceFactory;
+import product.BookSide;
+import product.ProductManager;
+import product.SymbolRegistry;
+import user.UserId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A write-ahead journal of the commands that change the books. Once set on the ProductManager (see setJournal),
+ * every add and cancel routed to a book is appended to the journal on the book's thread, just before the book
+ * processes it. After a restart, replay() feeds the journal back through the ProductManager, which rebuilds the books
+ * (and the users' orders) exactly as they were, with the same order ids.
+ * <p>
+ * Records have a fixed size of RECORD_SIZE bytes:
+ * <pre>
+ *   0  byte  type (1 = ADD, 2 = CANCEL; 0 if not written), written last
+ *   1  byte  side (1 = BUY, 2 = SELL; 0 for a CANCEL)
+ *   2  short unused
+ *   4  int   user (UserId code; -1 for a CANCEL)
+ *   8  long  product (SymbolRegistry.encode of the symbol)
+ *  16  long  order id sequence number (see OrderId)
+ *  24  int   price in cents
+ *  28  int   volume
+ *  32  long  System.nanoTime() when appended
+ * </pre>
+ * A slot whose type is 0 and which is followed by records is a gap: a record that was claimed but never completely
+ * written, e.g. because the process died while a book's thread was writing it while other books' threads carried on
+ * appending. Readers skip gaps. The command in a gap was never passed to its book, since a book only processes a
+ * command once its record is written.
+ * <p>
+ * The symbol is stored rather than its SymbolRegistry code, since codes depend on the order symbols were first seen
+ * and may differ after a restart.
+ * <p>
+ * The file is mapped into memory in segments, so appending a record claims a position with one atomic add and writes
+ * a few fields into the mapping; there is no system call or lock unless a new segment has to be mapped. Records reach
+ * the disk as set by the ForcePolicy. Records are published in the order their positions were claimed: once a record
+ * is written, its thread waits for the records before it to be published, then publishes its own. force() only
+ * flushes published records, so it never flushes a slot that is still being written.
+ */
+public final class OrderJournal implements AutoCloseable {
+    public static final int RECORD_SIZE = 40;
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    private static final byte ADD = 1;
+    private static final byte CANCEL = 2;
+    private static final int READ_BUFFER_SIZE = RECORD_SIZE * 1024;
+
+    private final FileChannel channel;
+    private final long segmentBytes;
+    private final ForcePolicy policy;
+    private final ScheduledExecutorService forcer;
+
+    /** segments[i] maps the file from i * segmentBytes, or is null if that part has not been mapped yet. */
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /** The file position the next record will be written at. */
+    private final AtomicLong end;
+
+    /** Every record before this position has been completely written. */
+    private final AtomicLong published;
+
+    /** Everything before this position has been forced. Guarded by this. */
+    private long forcedPosition;
+
+    private volatile boolean closed;
+
+    /**
+     * Opens a journal with segments of DEFAULT_SEGMENT_RECORDS records (see the full constructor).
+     * @throws IOException If the file cannot be opened or read.
+     */
+    public OrderJournal(Path file, ForcePolicy policy) throws IOException {
+        this(file, DEFAULT_SEGMENT_RECORDS, policy);
+    }
+
+    /**
+     * Opens a journal, creating the file if needed. New records are appended after any already in the file.
+     * @param file The journal file.
+     * @param segmentRecords How many records to map at a time.
+     * @param policy When to force records to disk.
+     * @throws IOException If the file cannot be opened or read.
+     * @throws IllegalArgumentException If segmentRecords is less than 1 or policy is null.
+     */
+    public OrderJournal(Path file, int segmentRecords, ForcePolicy policy) throws IOException {
+        if (segmentRecords < 1 || policy == null) {
+            throw new IllegalArgumentException("Invalid journal settings");
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segmentBytes = (long) segmentRecords * RECORD_SIZE;
+        this.policy = policy;
+        long start = scan(channel, null);
+        end = new AtomicLong(start);
+        published = new AtomicLong(start);
+        forcedPosition = start;
+
+        if (policy.micros > 0) {
+            forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-forcer");
+                t.setDaemon(true);
+                return t;
+            });
+            forcer.scheduleAtFixedRate(this::force, policy.micros, policy.micros, TimeUnit.MICROSECONDS);
+        } else {
+            forcer = null;
+        }
+    }
+
+    /**
+     * Appends an ADD of the order.
+     * @param o A validated order that has not yet been added to its book.
+     * @throws UncheckedIOException If the journal file could not be extended.
+     * @throws IllegalStateException If the journal is closed.
+     */
+    public void appendAdd(Order o) {
+        long position = claim();
+        try {
+            MappedByteBuffer segment = segment(position);
+            int offset = (int) (position % segmentBytes);
+            segment.put(offset + 1, o.getSide() == BookSide.BUY ? (byte) 1 : (byte) 2);
+            segment.putInt(offset + 4, UserId.encode(o.getUser()));
+            segment.putLong(offset + 8, SymbolRegistry.encode(o.getProduct()));
+            segment.putLong(offset + 16, OrderId.sequence(o.getId()));
+            segment.putInt(offset + 24, o.getPrice().getCents());
+            segment.putInt(offset + 28, o.getOriginalVolume());
+            segment.putLong(offset + 32, System.nanoTime());
+            segment.put(offset, ADD);
+        } finally {
+            // Published even if the record could not be written, as a gap, so later records are not held up.
+            publish(position);
+        }
+        forceIfDue(position);
+    }
+
+    /**
+     * Appends a CANCEL of the order with the given id.
+     * @param orderId The id of the order to cancel (see OrderId).
+     * @throws UncheckedIOException If the journal file could not be extended.
+     * @throws IllegalStateException If the journal is closed.
+     */
+    public void appendCancel(long orderId) {
+        long position = claim();
+        try {
+            MappedByteBuffer segment = segment(position);
+            int offset = (int) (position % segmentBytes);
+            String product = OrderId.product(orderId);
+            segment.put(offset + 1, (byte) 0);
+            segment.putInt(offset + 4, -1);
+            segment.putLong(offset + 8, product == null ? 0 : SymbolRegistry.encode(product));
+            segment.putLong(offset + 16, OrderId.sequence(orderId));
+            segment.putInt(offset + 24, 0);
+            segment.putInt(offset + 28, 0);
+            segment.putLong(offset + 32, System.nanoTime());
+            segment.put(offset, CANCEL);
+        } finally {
+            publish(position);
+        }
+        forceIfDue(position);
+    }
+
+    /**
+     * @return The number of record slots in the journal, including those in the file when it was opened (and any
+     * gaps among them).
+     */
+    public long getRecordCount() {
+        return end.get() / RECORD_SIZE;
+    }
+
+    /**
+     * Forces every record published so far to disk. A record still being written (and every record after it) is
+     * left for a later force.
+     * @throws UncheckedIOException If the records could not be written.
+     */
+    public synchronized void force() {
+        long to = published.get();
+        MappedByteBuffer[] mapped = segments;
+        while (forcedPosition < to) {
+            int index = (int) (forcedPosition / segmentBytes);
+            int from = (int) (forcedPosition % segmentBytes);
+            int length = (int) Math.min(segmentBytes - from, to - forcedPosition);
+            if (index < mapped.length && mapped[index] != null) {
+                mapped[index].force(from, length);
+            }
+            forcedPosition += length;
+        }
+    }
+
+    /**
+     * Forces every record to disk and closes the file. Must only be called once nothing is appending any more.
+     * @throws IOException If the file could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (forcer != null) {
+            forcer.shutdown();
+        }
+        try {
+            force();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // Drop the unused tail of the last segment, so the file ends with the last record.
+        channel.truncate(end.get());
+        channel.close();
+    }
+
+    /**
+     * Reads every record in a journal file, in the order they were appended.
+     * @param file The journal file.
+     * @param handler Called with each record. The same JournalRecord is passed for every record.
+     * @return The number of records read. Gaps are skipped and not counted.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long read(Path file, Consumer<JournalRecord> handler) throws IOException {
+        long[] count = new long[1];
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            scan(in, r -> {
+                count[0]++;
+                handler.accept(r);
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Rebuilds the books by passing every command in a journal file to the ProductManager again, with the orders'
+     * original ids. The books' products (and the orders' users) must have been added first, and this must run before
+     * a journal is set on the ProductManager, or the replayed commands would be journaled again.
+     * @param file The journal file.
+     * @return The number of commands replayed. Adds for products that have no book are skipped.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long replay(Path file) throws IOException {
+        ProductManager manager = ProductManager.getInstance();
+        long[] replayed = new long[1];
+        read(file, r -> {
+            if (r.type == JournalRecord.Type.ADD) {
+                try {
+                    manager.addOrder(new Order(r.user, r.product, PriceFactory.makePrice(r.priceCents), r.volume,
+                            r.side, r.sequence));
+                } catch (DataValidationException | OrderNotFoundException e) {
+                    return;
+                }
+            } else {
+                int code = SymbolRegistry.getInstance().codeOf(r.product);
+                if (code < 0) return;
+                manager.cancel(OrderId.of(code, r.sequence));
+            }
+            replayed[0]++;
+        });
+        return replayed[0];
+    }
+
+    private long claim() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        return end.getAndAdd(RECORD_SIZE);
+    }
+
+    /**
+     * Publishes the record at position once every record before it has been published.
+     */
+    private void publish(long position) {
+        for (int spins = 0; published.get() != position; spins++) {
+            // The thread writing an earlier record may have been descheduled mid-record; let it run.
+            if (spins < 100) Thread.onSpinWait(); else Thread.yield();
+        }
+        published.set(position + RECORD_SIZE);
+    }
+
+    private void forceIfDue(long position) {
+        int every = policy.records;
+        if (every > 0 && (position / RECORD_SIZE + 1) % every == 0) {
+            force();
+        }
+    }
+
+    private MappedByteBuffer segment(long position) {
+        int index = (int) (position / segmentBytes);
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+        return map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+        try {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, index * segmentBytes,
+                    segmentBytes);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            mapped = Arrays.copyOf(mapped, Math.max(mapped.length, index + 1));
+            mapped[index] = segment;
+            segments = mapped;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads records from the start of a journal file to its end, passing each to the handler if there is one.
+     * Unwritten slots are skipped; those after the last record are the unused tail of its segment, and any before it
+     * are gaps.
+     * @return The file position after the last record.
+     */
+    private static long scan(FileChannel in, Consumer<JournalRecord> handler) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        JournalRecord record = new JournalRecord();
+        long position = 0;
+        long last = 0;
+        while (true) {
+            buffer.clear();
+            while (buffer.hasRemaining() && in.read(buffer, position + buffer.position()) > 0) {
+                // Keep reading until the buffer is full or the file ends.
+            }
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                int offset = buffer.position();
+                byte type = buffer.get(offset);
+                buffer.position(offset + RECORD_SIZE);
+                position += RECORD_SIZE;
+                if (type != ADD && type != CANCEL) {
+                    continue;
+                }
+                if (handler != null) {
+                    decode(buffer, offset, type, record);
+                    handler.accept(record);
+                }
+                last = position;
+            }
+            if (buffer.limit() < READ_BUFFER_SIZE) {
+                return last;
+            }
+        }
+    }
+
+    private static void decode(ByteBuffer buffer, int offset, byte type, JournalRecord record) {
+        record.product = SymbolRegistry.decode(buffer.getLong(offset + 8));
+        record.sequence = buffer.getLong(offset + 16);
+        record.nanos = buffer.getLong(offset + 32);
+        if (type == ADD) {
+            record.type = JournalRecord.Type.ADD;
+            record.side = buffer.get(offset + 1) == 1 ? BookSide.BUY : BookSide.SELL;
+            record.user = UserId.decode(buffer.getInt(offset + 4));
+            record.priceCents = buffer.getInt(offset + 24);
+            record.volume = buffer.getInt(offset + 28);
+        } else {
+            record.type = JournalRecord.Type.CANCEL;
+            record.side = null;
+            record.user = null;
+            record.priceCents = 0;
+            record.volume = 0;
+        }
+    }
+}
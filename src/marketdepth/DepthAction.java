@@ -0,0 +1,15 @@
+package marketdepth;
+
+/**
+ * What happened to a price level in a depth update.
+ */
+public enum DepthAction {
+    /** A new price level was created; the volume is the level's first volume. */
+    INSERT,
+
+    /** An existing price level's aggregate volume changed; the volume is the new total. */
+    UPDATE,
+
+    /** A price level emptied and was removed; the volume is 0. */
+    DELETE
+}
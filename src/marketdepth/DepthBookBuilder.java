@@ -0,0 +1,119 @@
+package marketdepth;
+
+import price.Price;
+import product.BookSide;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A DepthBookBuilder keeps a local copy of every price level of one symbol's book from the DepthPublisher's updates.
+ * <p>
+ * The builder starts from the first snapshot it receives and applies each update that follows. If an update arrives
+ * out of sequence (e.g. after subscribing, or if the observer was unsubscribed for a while), the copy can no longer be
+ * trusted: the builder marks itself out of sync and ignores updates until the next snapshot.
+ */
+public final class DepthBookBuilder implements DepthObserver {
+    private final String symbol;
+    private final TreeMap<Price, Integer> buyLevels = new TreeMap<>(Collections.reverseOrder());
+    private final TreeMap<Price, Integer> sellLevels = new TreeMap<>();
+
+    /** The sequence number of the last update applied, or -1 before the first snapshot. */
+    private long sequence = -1;
+    private boolean synced;
+    private long gapCount;
+
+    /**
+     * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL") to build; updates for other symbols are ignored.
+     */
+    public DepthBookBuilder(String symbol) {
+        this.symbol = symbol;
+    }
+
+    @Override
+    public synchronized void updateDepth(String symbol, long sequence, BookSide side, DepthAction action, Price price,
+                                         int volume) {
+        if (!this.symbol.equals(symbol) || !synced || sequence <= this.sequence) return;
+        if (sequence != this.sequence + 1) {
+            synced = false;
+            gapCount++;
+            return;
+        }
+        this.sequence = sequence;
+        TreeMap<Price, Integer> levels = side == BookSide.BUY ? buyLevels : sellLevels;
+        if (action == DepthAction.DELETE) {
+            levels.remove(price);
+        } else {
+            levels.put(price, volume);
+        }
+    }
+
+    @Override
+    public synchronized void depthSnapshot(DepthSnapshot snapshot) {
+        if (!symbol.equals(snapshot.getSymbol())) return;
+        load(buyLevels, snapshot.getBuyLevels());
+        load(sellLevels, snapshot.getSellLevels());
+        sequence = snapshot.getSequence();
+        synced = true;
+    }
+
+    /**
+     * @param side The side of the book.
+     * @param depth The most levels to return.
+     * @return Up to depth levels of the given side, best price first.
+     */
+    public synchronized List<DepthLevel> getLevels(BookSide side, int depth) {
+        TreeMap<Price, Integer> levels = side == BookSide.BUY ? buyLevels : sellLevels;
+        List<DepthLevel> result = new ArrayList<>(Math.min(depth, levels.size()));
+        for (Map.Entry<Price, Integer> entry : levels.entrySet()) {
+            if (result.size() >= depth) break;
+            result.add(new DepthLevel(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * @return The aggregate volume at the given price on the given side, or 0 if there is no such level.
+     */
+    public synchronized int volumeAt(BookSide side, Price price) {
+        Integer volume = (side == BookSide.BUY ? buyLevels : sellLevels).get(price);
+        return volume == null ? 0 : volume;
+    }
+
+    /**
+     * @return True if the local copy reflects every update up to getSequence().
+     */
+    public synchronized boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return The sequence number of the last update applied.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The number of times a missed update put the builder out of sync.
+     */
+    public synchronized long getGapCount() {
+        return gapCount;
+    }
+
+    private static void load(TreeMap<Price, Integer> levels, List<DepthLevel> snapshotLevels) {
+        levels.clear();
+        for (DepthLevel level : snapshotLevels) {
+            levels.put(level.getPrice(), level.getVolume());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return symbol + " #" + sequence + (synced ? "" : " (out of sync)") + " BUY " + getLevels(BookSide.BUY,
+                buyLevels.size()) + " SELL " + getLevels(BookSide.SELL, sellLevels.size());
+    }
+}
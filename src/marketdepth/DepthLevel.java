@@ -0,0 +1,32 @@
+package marketdepth;
+
+import price.Price;
+
+/**
+ * This class holds the price and aggregate volume of one price level in a depth snapshot.
+ */
+public final class DepthLevel {
+    private final Price price;
+    private final int volume;
+
+    public DepthLevel(Price price, int volume) {
+        this.price = price;
+        this.volume = volume;
+    }
+
+    public Price getPrice() {
+        return price;
+    }
+
+    public int getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return A string with the level price and volume formatted as: $98.10x105
+     */
+    @Override
+    public String toString() {
+        return price + "x" + volume;
+    }
+}
@@ -0,0 +1,31 @@
+package marketdepth;
+
+import price.Price;
+import product.BookSide;
+
+/**
+ * This interface is implemented by classes that want to be able to register for depth-of-book (every price level)
+ * updates, as opposed to the top of book sent to CurrentMarketObservers.
+ * <p>
+ * Each change to a price level is sent as an incremental update carrying the level's new aggregate volume. Updates for
+ * a symbol are numbered consecutively, and a full snapshot is sent periodically (and soon after subscribing), so an
+ * observer can build the book from a snapshot and then apply the updates that follow it. DepthBookBuilder does this.
+ */
+public interface DepthObserver {
+    /**
+     * This method is called by the DepthPublisher when a price level changes.
+     * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param sequence The update's sequence number; one more than the previous update for the same symbol.
+     * @param side The side of the book the level is on.
+     * @param action Whether the level was inserted, updated or deleted.
+     * @param price The price of the level.
+     * @param volume The new aggregate volume at the level (0 for DELETE).
+     */
+    void updateDepth(String symbol, long sequence, BookSide side, DepthAction action, Price price, int volume);
+
+    /**
+     * This method is called by the DepthPublisher with a full copy of a book.
+     * @param snapshot Every level in the book, as of the update numbered snapshot.getSequence().
+     */
+    void depthSnapshot(DepthSnapshot snapshot);
+}
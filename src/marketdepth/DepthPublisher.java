@@ -0,0 +1,130 @@
+package marketdepth;
+
+import exceptions.DataValidationException;
+import price.Price;
+import product.BookSide;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class is a singleton that publishes depth-of-book updates from the ProductBooks to subscribed DepthObservers.
+ * <p>
+ * ProductBooks only build depth updates for symbols that have subscribers, so an unwatched book pays one map lookup
+ * per level change. Each symbol keeps its own sequence numbering, and after every snapshot interval updates (and after
+ * a new subscription) the next level change is followed by a full snapshot.
+ */
+public final class DepthPublisher {
+    private static final DepthPublisher instance = new DepthPublisher();
+
+    /** The subscribers of one symbol, and that symbol's update numbering. */
+    private static final class Feed {
+        /** Never modified once stored; replaced whole under the Feed's monitor. */
+        volatile DepthObserver[] observers = new DepthObserver[0];
+        volatile boolean snapshotRequested;
+
+        // Only used by the thread working on the symbol's book.
+        long sequence;
+        int updatesSinceSnapshot;
+    }
+
+    /** &lt;Stock, Feed of DepthObservers watching that stock&gt; */
+    private final ConcurrentHashMap<String, Feed> feeds = new ConcurrentHashMap<>();
+
+    private volatile int snapshotInterval = 100;
+
+    private DepthPublisher() {}
+
+    public static DepthPublisher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Subscribe a depth observer to a stock. The observer receives a snapshot after the book's next change.
+     * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param observer The depth observer who wants to be subscribed to the stock.
+     */
+    public void subscribeDepth(String symbol, DepthObserver observer) {
+        Feed feed = feeds.computeIfAbsent(symbol, s -> new Feed());
+        synchronized (feed) {
+            DepthObserver[] observers = Arrays.copyOf(feed.observers, feed.observers.length + 1);
+            observers[observers.length - 1] = observer;
+            feed.observers = observers;
+            feed.snapshotRequested = true;
+        }
+    }
+
+    /**
+     * Unsubscribe a depth observer from a stock.
+     * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
+     * @param observer The depth observer who wants to be unsubscribed from the stock.
+     */
+    public void unSubscribeDepth(String symbol, DepthObserver observer) {
+        Feed feed = feeds.get(symbol);
+        if (feed == null) return;
+        synchronized (feed) {
+            DepthObserver[] observers = feed.observers;
+            for (int i = 0; i < observers.length; i++) {
+                if (observers[i] == observer) {
+                    DepthObserver[] updated = new DepthObserver[observers.length - 1];
+                    System.arraycopy(observers, 0, updated, 0, i);
+                    System.arraycopy(observers, i + 1, updated, i, observers.length - i - 1);
+                    feed.observers = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets how many depth updates are sent for a symbol between full snapshots.
+     * @param updates The number of updates between snapshots.
+     * @throws DataValidationException If updates is less than 1.
+     */
+    public void setSnapshotInterval(int updates) throws DataValidationException {
+        if (updates < 1) {
+            throw new DataValidationException("Invalid snapshot interval");
+        }
+        snapshotInterval = updates;
+    }
+
+    /**
+     * @param symbol Stock symbol/id (e.g. "TSLA", "AAPL").
+     * @return True if any DepthObserver is subscribed to the stock.
+     */
+    public boolean hasSubscribers(String symbol) {
+        Feed feed = feeds.get(symbol);
+        return feed != null && feed.observers.length > 0;
+    }
+
+    /**
+     * Sends one level change to the stock's subscribers. Called by the ProductBook, from the thread working on it.
+     * @return True if a snapshot is due, in which case the ProductBook follows up with publishSnapshot.
+     */
+    public boolean publishUpdate(String symbol, BookSide side, DepthAction action, Price price, int volume) {
+        Feed feed = feeds.get(symbol);
+        if (feed == null) return false;
+        long sequence = ++feed.sequence;
+        for (DepthObserver observer : feed.observers) {
+            observer.updateDepth(symbol, sequence, side, action, price, volume);
+        }
+        if (feed.snapshotRequested || ++feed.updatesSinceSnapshot >= snapshotInterval) {
+            feed.snapshotRequested = false;
+            feed.updatesSinceSnapshot = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sends a full copy of the stock's book to its subscribers, numbered as the last update sent.
+     */
+    public void publishSnapshot(String symbol, DepthLevel[] buyLevels, DepthLevel[] sellLevels) {
+        Feed feed = feeds.get(symbol);
+        if (feed == null) return;
+        DepthSnapshot snapshot = new DepthSnapshot(symbol, feed.sequence, buyLevels, sellLevels);
+        for (DepthObserver observer : feed.observers) {
+            observer.depthSnapshot(snapshot);
+        }
+    }
+}
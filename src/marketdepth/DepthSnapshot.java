@@ -0,0 +1,50 @@
+package marketdepth;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A full copy of every price level in one ProductBook, best price first on each side. The sequence number is that of
+ * the last depth update already reflected in the snapshot.
+ */
+public final class DepthSnapshot {
+    private final String symbol;
+    private final long sequence;
+    private final List<DepthLevel> buyLevels;
+    private final List<DepthLevel> sellLevels;
+
+    public DepthSnapshot(String symbol, long sequence, DepthLevel[] buyLevels, DepthLevel[] sellLevels) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.buyLevels = Collections.unmodifiableList(Arrays.asList(buyLevels));
+        this.sellLevels = Collections.unmodifiableList(Arrays.asList(sellLevels));
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The BUY levels, highest price first.
+     */
+    public List<DepthLevel> getBuyLevels() {
+        return buyLevels;
+    }
+
+    /**
+     * @return The SELL levels, lowest price first.
+     */
+    public List<DepthLevel> getSellLevels() {
+        return sellLevels;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + " #" + sequence + " BUY " + buyLevels + " SELL " + sellLevels;
+    }
+}
@@ -3,45 +3,137 @@ package order;
 import price.Price;
 import exceptions.DataValidationException;
 import product.BookSide;
+import product.SymbolRegistry;
+import user.UserId;
 
 /**
  * The Order class represents an order to buy or sell a volume (i.e., quantity) of stock at a certain price.
  * The order will also maintain its processing state.
+ * <p>
+ * Orders are either created directly, or acquired from an OrderPool and reused. A pooled order is returned to its
+ * pool by the ProductBook once it has been fully filled or cancelled and the event has been reported, so nothing may
+ * keep a reference to a pooled Order after handing it to the ProductManager; use its OrderDTO instead.
  */
 public class Order {
     /** A 3 letter user code. */
-    private final String user;
+    private String user;
 
     /** A 1-5 letter stock symbol. */
-    private final String product;
+    private String product;
 
-    private final Price price;
-    private final BookSide side;
+    /** The product's SymbolRegistry code. */
+    private int productCode;
 
-    /** A unique identifier for this order. */
-    private final String id;
+    private Price price;
+    private BookSide side;
+
+    /** A unique identifier for this order (see OrderId). */
+    private long id;
 
     /** The quantity of the stock being ordered. */
-    private final int originalVolume;
+    private int originalVolume;
 
     private int remainingVolume;
     private int cancelledVolume;
     private int filledVolume;
 
+    /** The pool this order came from, or null if it was created directly. */
+    final OrderPool pool;
+
+    /** True while a pooled order is back in its pool. */
+    boolean released;
+
+    /** Set for pooled orders when the pool tracks leaks. */
+    OrderPool.LeakTracker leakTracker;
 
     public Order(String user, String product, Price price, int originalVolume , BookSide side)
             throws DataValidationException {
-        this.user = validateUser(user);
-        this.product = validateProduct(product);
+        pool = null;
+        reset(user, product, price, originalVolume, side, 0);
+    }
+
+    /**
+     * Recreates an order that was created earlier, e.g. when replaying an OrderJournal. The order gets the id with the
+     * given sequence number (see OrderId), and later orders are given higher sequence numbers.
+     * @param sequence The sequence number of the order's original id; must be positive.
+     * @throws DataValidationException If a parameter is not valid, or sequence is not positive.
+     */
+    public Order(String user, String product, Price price, int originalVolume, BookSide side, long sequence)
+            throws DataValidationException {
+        pool = null;
+        if (sequence <= 0) {
+            throw new DataValidationException("Invalid Sequence");
+        }
+        reset(user, product, price, originalVolume, side, sequence);
+        OrderId.advanceTo(sequence);
+    }
+
+    /**
+     * Creates an empty order for an OrderPool; it is filled in by reset() when acquired.
+     */
+    Order(OrderPool pool) {
+        this.pool = pool;
+        released = true;
+    }
+
+    /**
+     * For subclasses that keep the order's state somewhere else and override every getter and setter to read and
+     * write it there (e.g. a view over an order stored as primitive fields).
+     */
+    protected Order() {
+        pool = null;
+    }
+
+    /**
+     * Validates the parameters and makes this a new order with a new id and no fills or cancels. If validation fails,
+     * the order is left unchanged.
+     * @param sequence The sequence number to build the id from, or 0 for a new one from OrderId.next().
+     */
+    void reset(String user, String product, Price price, int originalVolume, BookSide side, long sequence)
+            throws DataValidationException {
+        String validUser = validateUser(user);
+        String validProduct = validateProduct(product);
+        BookSide validSide = validateSide(side);
+        int validVolume = validateOrigVol(originalVolume);
+        int code = SymbolRegistry.getInstance().intern(validProduct);
+
+        this.user = validUser;
+        this.product = validProduct;
+        productCode = code;
         this.price = price;
-        this.side = validateSide(side);
-        id = user + product + price + System.nanoTime();
-        this.originalVolume = validateOrigVol(originalVolume);
-        remainingVolume = originalVolume;
+        this.side = validSide;
+        id = sequence == 0 ? OrderId.next(code) : OrderId.of(code, sequence);
+        this.originalVolume = validVolume;
+        remainingVolume = validVolume;
         cancelledVolume = 0;
         filledVolume = 0;
     }
 
+    /**
+     * Overwrites every field with values that cannot occur in a live order, so that any use of a released order
+     * shows up as an obviously wrong price, volume or id (or a NullPointerException) rather than as stale data.
+     */
+    void poison() {
+        user = null;
+        product = null;
+        productCode = -1;
+        price = null;
+        side = null;
+        id = 0;
+        originalVolume = Integer.MIN_VALUE;
+        remainingVolume = Integer.MIN_VALUE;
+        cancelledVolume = Integer.MIN_VALUE;
+        filledVolume = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns this order to the OrderPool it was acquired from. Does nothing for an order that was not pooled.
+     * @throws IllegalStateException If the order has already been released.
+     */
+    public void release() {
+        if (pool != null) pool.release(this);
+    }
+
     /**
      * This method will validate the Order constructor user parameter and return it if valid.
      * @return a validated user String.
@@ -49,7 +141,7 @@ public class Order {
      * (any 3 uppercase letters from A-Z).
      */
     private String validateUser(String user) throws DataValidationException {
-        if (user == null || !user.matches("^[A-Z]{3}$")) {
+        if (!UserId.isValid(user)) {
             throw new DataValidationException("Invalid User");
         }
 
@@ -63,7 +155,7 @@ public class Order {
      * (any 3 uppercase letters from A-Z).
      */
     private String validateProduct(String product) throws DataValidationException {
-        if (product == null || !product.matches("^[A-Z0-9.]{1,5}$")) {
+        if (!SymbolRegistry.isValid(product)) {
             throw new DataValidationException("Invalid Product");
         }
 
@@ -100,15 +192,26 @@ public class Order {
      * @return a Data Transfer Object for this order.
      */
     public OrderDTO makeTradableDTO() {
-        return new OrderDTO(user, product, price, side, id,
-                originalVolume, remainingVolume, cancelledVolume, filledVolume);
+        return new OrderDTO(getUser(), getProduct(), getPrice(), getSide(), getId(),
+                getOriginalVolume(), getRemainingVolume(), getCancelledVolume(), getFilledVolume());
 
     }
 
+    public String getUser() {
+        return user;
+    }
+
     public String getProduct() {
         return product;
     }
 
+    /**
+     * @return The SymbolRegistry code of the order's product.
+     */
+    public int getProductCode() {
+        return productCode;
+    }
+
     public Price getPrice() {
         return price;
     }
@@ -117,10 +220,14 @@ public class Order {
         return side;
     }
 
-    public String getId() {
+    public long getId() {
         return id;
     }
 
+    public int getOriginalVolume() {
+        return originalVolume;
+    }
+
     public int getRemainingVolume() {
         return remainingVolume;
     }
@@ -148,13 +255,13 @@ public class Order {
     /**
      * Example output:
      * <p>
-     * XRF order: BUY AMZN at $96.38, Orig Vol: 50, Rem Vol: 50, Fill Vol: 0, CXL Vol: 0, ID:
-     * AAAAMZN$96.38158311853491300
+     * XRF order: BUY AMZN at $96.38, Orig Vol: 50, Rem Vol: 50, Fill Vol: 0, CXL Vol: 0, ID: AMZN-1042
      */
     @Override
     public String toString() {
-        return user + " order: " + side + " " + product + " at " + price + ", Orig Vol: " + originalVolume + ", Rem Vol: "
-                + remainingVolume + ", Fill Vol: " + filledVolume + ", CXL Vol: " + cancelledVolume + ", ID: " + id;
+        return getUser() + " order: " + getSide() + " " + getProduct() + " at " + getPrice() + ", Orig Vol: "
+                + getOriginalVolume() + ", Rem Vol: " + getRemainingVolume() + ", Fill Vol: " + getFilledVolume()
+                + ", CXL Vol: " + getCancelledVolume() + ", ID: " + OrderId.toString(getId());
     }
 
 
@@ -12,13 +12,13 @@ public class OrderDTO {
     public final String product;
     public final Price price;
     public final BookSide side;
-    public final String id;
+    public final long id;
     public final int originalVolume;
     public int remainingVolume;
     public int cancelledVolume;
     public int filledVolume;
 
-    public OrderDTO(String user, String product, Price price, BookSide side, String id, int originalVolume,
+    public OrderDTO(String user, String product, Price price, BookSide side, long id, int originalVolume,
                     int remainingVolume, int cancelledVolume, int filledVolume) {
         this.user = user;
         this.product = product;
@@ -26,7 +26,7 @@ public class OrderDTO {
         this.side = side;
         this.id = id;
         this.originalVolume = originalVolume;
-        this.remainingVolume = originalVolume;
+        this.remainingVolume = remainingVolume;
         this.cancelledVolume = cancelledVolume;
         this.filledVolume = filledVolume;
     }
@@ -34,6 +34,7 @@ public class OrderDTO {
     @Override
     public String toString() {
         return user + " order: " + side + " " + product + " at " + price + ", Orig Vol: " + originalVolume + ", Rem Vol: "
-                + remainingVolume + ", Fill Vol: " + filledVolume + ", CXL Vol: " + cancelledVolume + ", ID: " + id;
+                + remainingVolume + ", Fill Vol: " + filledVolume + ", CXL Vol: " + cancelledVolume + ", ID: "
+                + OrderId.toString(id);
     }
 }
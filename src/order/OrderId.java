@@ -0,0 +1,97 @@
+package order;
+
+import product.SymbolRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Order ids are 64-bit numbers rather than strings, so they cost nothing to build and are cheap to hash and compare.
+ * <p>
+ * The low 48 bits hold a sequence number taken from one counter shared by the whole engine, so ids are unique and
+ * increase in the order orders were created. The high bits hold the order's product code from the SymbolRegistry
+ * (plus one, so that no id is 0), so the book an order belongs to can be found from its id alone. Ids are only turned
+ * into text for output, as the product followed by the sequence number (e.g. "WMT-1042").
+ */
+public final class OrderId {
+    private static final int SEQUENCE_BITS = 48;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private OrderId() {}
+
+    /**
+     * @param productCode The SymbolRegistry code of the new order's product.
+     * @return A new, unique id for an order in that product.
+     */
+    public static long next(int productCode) {
+        long seq = sequence.incrementAndGet();
+        if (seq > SEQUENCE_MASK) {
+            throw new IllegalStateException("Order id sequence exhausted");
+        }
+        return of(productCode, seq);
+    }
+
+    /**
+     * Builds the id an order in the given product with the given sequence number has, e.g. to recreate an order
+     * recorded in an OrderJournal. The sequence itself is not advanced (see advanceTo).
+     * @param productCode The SymbolRegistry code of the order's product.
+     * @param seq The order's sequence number.
+     * @return The order's id.
+     */
+    public static long of(int productCode, long seq) {
+        return ((long) (productCode + 1) << SEQUENCE_BITS) | seq;
+    }
+
+    /**
+     * @return The sequence number of the newest id handed out by next(), or recreated since (see advanceTo).
+     */
+    public static long lastSequence() {
+        return sequence.get();
+    }
+
+    /**
+     * Makes sure next() never hands out a sequence number at or below seq, e.g. after orders with recorded ids have
+     * been recreated. Does nothing if the sequence is already past seq.
+     */
+    public static void advanceTo(long seq) {
+        sequence.accumulateAndGet(seq, Math::max);
+    }
+
+    /**
+     * @return The SymbolRegistry code of the product encoded in the id, or -1 if the id was not made by next().
+     */
+    public static int productCode(long id) {
+        return (int) (id >>> SEQUENCE_BITS) - 1;
+    }
+
+    /**
+     * @return The product encoded in the id, or null if the id was not made by next().
+     */
+    public static String product(long id) {
+        return SymbolRegistry.getInstance().symbolOf(productCode(id));
+    }
+
+    /**
+     * @return The sequence number part of the id.
+     */
+    public static long sequence(long id) {
+        return id & SEQUENCE_MASK;
+    }
+
+    /**
+     * Appends the text form of the id (e.g. "WMT-1042") without creating any intermediate strings.
+     */
+    public static void appendTo(StringBuilder s, long id) {
+        s.append(product(id)).append('-').append(sequence(id));
+    }
+
+    /**
+     * @return The text form of the id, e.g. "WMT-1042".
+     */
+    public static String toString(long id) {
+        StringBuilder s = new StringBuilder(16);
+        appendTo(s, id);
+        return s.toString();
+    }
+}
@@ -0,0 +1,196 @@
+package order;
+
+import exceptions.DataValidationException;
+import price.Price;
+import product.BookSide;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An OrderPool recycles Order objects so that a steady flow of orders does not produce garbage. acquire() hands out
+ * a free Order (making a new one only if the pool is empty) and release() takes it back; the ProductBook releases
+ * pooled orders itself once they are fully filled or cancelled and the event has been reported.
+ * <p>
+ * In debug mode, the pool also:
+ * <ul>
+ *     <li>poisons released orders (see Order.poison), so use after release is caught quickly, and</li>
+ *     <li>tracks leaks: an order that is garbage collected while acquired (i.e. it was never released) is counted
+ *     and reported on System.err with the stack trace of the acquire() call that handed it out.</li>
+ * </ul>
+ * Releasing an order twice, or to a pool it did not come from, always throws an IllegalStateException.
+ */
+public final class OrderPool {
+    private static final Cleaner cleaner = Cleaner.create();
+
+    /** Free orders; free[0..freeCount) are available. Guarded by this. */
+    private final Order[] free;
+    private int freeCount;
+
+    private final boolean debug;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong leaked = new AtomicLong();
+
+    /**
+     * The leak state of one pooled Order. It is shared by the Order and its Cleaner action, but does not refer to the
+     * Order, so the Order can still be collected.
+     */
+    static final class LeakTracker implements Runnable {
+        private final OrderPool pool;
+        volatile Throwable acquiredAt;
+
+        LeakTracker(OrderPool pool) {
+            this.pool = pool;
+        }
+
+        /** Called by the Cleaner once the Order has been collected. */
+        @Override
+        public void run() {
+            Throwable site = acquiredAt;
+            if (site != null) {
+                pool.leaked.incrementAndGet();
+                System.err.println("Pooled order was never released");
+                site.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Creates a pool without leak tracking or poisoning.
+     * @param capacity The most free orders the pool keeps; orders released to a full pool are left to the GC.
+     * @throws DataValidationException If capacity is less than 1.
+     */
+    public OrderPool(int capacity) throws DataValidationException {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity The most free orders the pool keeps; orders released to a full pool are left to the GC.
+     * @param debug True to poison released orders and track leaks (slower; meant for testing).
+     * @throws DataValidationException If capacity is less than 1.
+     */
+    public OrderPool(int capacity, boolean debug) throws DataValidationException {
+        if (capacity < 1) {
+            throw new DataValidationException("Invalid pool capacity");
+        }
+        free = new Order[capacity];
+        this.debug = debug;
+    }
+
+    /**
+     * Takes a free order from the pool (or makes one) and sets it up as a new order, exactly as the Order
+     * constructor would.
+     * @throws DataValidationException If the order parameters are invalid (see the Order constructor).
+     */
+    public Order acquire(String user, String product, Price price, int originalVolume, BookSide side)
+            throws DataValidationException {
+        return acquire(user, product, price, originalVolume, side, 0);
+    }
+
+    /**
+     * Takes a free order from the pool (or makes one) and sets it up as an order recreated with an earlier id,
+     * exactly as the Order constructor that takes a sequence number would.
+     * @param sequence The sequence number of the order's original id, or 0 to give it a new id.
+     * @throws DataValidationException If the order parameters are invalid, or sequence is negative.
+     */
+    public Order acquire(String user, String product, Price price, int originalVolume, BookSide side, long sequence)
+            throws DataValidationException {
+        if (sequence < 0) {
+            throw new DataValidationException("Invalid Sequence");
+        }
+        Order o = take();
+        try {
+            o.reset(user, product, price, originalVolume, side, sequence);
+        } catch (DataValidationException e) {
+            putBack(o);
+            throw e;
+        }
+        if (sequence > 0) {
+            OrderId.advanceTo(sequence);
+        }
+        o.released = false;
+        if (o.leakTracker != null) {
+            o.leakTracker.acquiredAt = new Throwable("Order acquired here");
+        }
+        acquired.incrementAndGet();
+        return o;
+    }
+
+    /**
+     * Returns an order to the pool. Usually called by the ProductBook (through Order.release()), not directly.
+     * @throws IllegalStateException If the order did not come from this pool or has already been released.
+     */
+    public void release(Order o) {
+        if (o.pool != this) {
+            throw new IllegalStateException("Order does not belong to this pool");
+        }
+        synchronized (this) {
+            if (o.released) {
+                throw new IllegalStateException("Order released twice");
+            }
+            o.released = true;
+        }
+        if (o.leakTracker != null) {
+            o.leakTracker.acquiredAt = null;
+        }
+        if (debug) {
+            o.poison();
+        }
+        released.incrementAndGet();
+        putBack(o);
+    }
+
+    /**
+     * @return The number of Order objects the pool has had to create.
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return The number of orders acquired and not yet released.
+     */
+    public long getOutstandingCount() {
+        return acquired.get() - released.get();
+    }
+
+    /**
+     * @return The number of free orders in the pool.
+     */
+    public synchronized int getAvailableCount() {
+        return freeCount;
+    }
+
+    /**
+     * @return In debug mode, the number of acquired orders that were garbage collected without being released.
+     */
+    public long getLeakCount() {
+        return leaked.get();
+    }
+
+    private Order take() {
+        synchronized (this) {
+            if (freeCount > 0) {
+                Order o = free[--freeCount];
+                free[freeCount] = null;
+                return o;
+            }
+        }
+        Order o = new Order(this);
+        created.incrementAndGet();
+        if (debug) {
+            o.leakTracker = new LeakTracker(this);
+            cleaner.register(o, o.leakTracker);
+        }
+        return o;
+    }
+
+    private synchronized void putBack(Order o) {
+        if (freeCount < free.length) {
+            free[freeCount++] = o;
+        }
+    }
+}
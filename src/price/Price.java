@@ -4,6 +4,8 @@ import exceptions.InvalidPriceOperation;
 
 /**
  * The Price class represents a price in its cents value to avoid floating point errors.
+ * Arithmetic is overflow-checked: a result that does not fit in an int of cents throws InvalidPriceOperation instead
+ * of silently wrapping around.
  */
 public class Price implements Comparable<Price> {
     private final int cents;
@@ -12,6 +14,10 @@ public class Price implements Comparable<Price> {
         cents = centsIn;
     }
 
+    public int getCents() {
+        return cents;
+    }
+
     public boolean isNegative() {
         return cents < 0;
     }
@@ -20,19 +26,30 @@ public class Price implements Comparable<Price> {
         if (p == null) {
             throw new InvalidPriceOperation("Null value passed in for add");
         }
-        return PriceFactory.makePrice(cents + p.cents);
+        try {
+            return PriceFactory.makePrice(Math.addExact(cents, p.cents));
+        } catch (ArithmeticException e) {
+            throw new InvalidPriceOperation("Overflow in add");
+        }
     }
 
     public Price subtract(Price p) throws InvalidPriceOperation {
         if (p == null) {
             throw new InvalidPriceOperation("Null value passed in for subtract");
         }
-        return PriceFactory.makePrice(cents - p.cents);
+        try {
+            return PriceFactory.makePrice(Math.subtractExact(cents, p.cents));
+        } catch (ArithmeticException e) {
+            throw new InvalidPriceOperation("Overflow in subtract");
+        }
     }
 
-    public Price multiply(int n) {
-
-        return PriceFactory.makePrice(cents * n);
+    public Price multiply(int n) throws InvalidPriceOperation {
+        try {
+            return PriceFactory.makePrice(Math.multiplyExact(cents, n));
+        } catch (ArithmeticException e) {
+            throw new InvalidPriceOperation("Overflow in multiply");
+        }
     }
 
     public boolean greaterOrEqual(Price p) throws InvalidPriceOperation {
@@ -68,7 +85,7 @@ public class Price implements Comparable<Price> {
         if (p == null) {
             throw new UnsupportedOperationException("Null value passed in for compareTo");
         }
-        return cents - p.cents;
+        return Integer.compare(cents, p.cents);
     }
 
     @Override
@@ -88,8 +105,8 @@ public class Price implements Comparable<Price> {
 
     @Override
     public String toString() {
-        int dollars = Math.abs(cents) / 100;
-        int cents = Math.abs(this.cents) % 100;
+        long dollars = Math.abs((long) cents) / 100;
+        long cents = Math.abs((long) this.cents) % 100;
         return "$" + (this.cents < 0 ? "-" : "") + dollars + "." + String.format("%02d", cents); // "." + cents
     }
 
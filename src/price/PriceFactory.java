@@ -1,15 +1,82 @@
 package price;
 
+import exceptions.DataValidationException;
 import exceptions.InvalidPriceOperation;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * The PriceFactory class creates Price objects, and stores them in a HashMap to avoid creating duplicate Price objects.
+ * The PriceFactory class creates Price objects, and caches them to avoid creating duplicate Price objects.
  * Price objects should not be created with "new Price()" outside of this class.
+ * <p>
+ * The cache has two parts. Prices inside a configurable "hot" range of cents are kept in an array indexed directly by
+ * cents, so a hit is one array read. Prices outside that range go into a small fixed-size table indexed by a hash of
+ * the cents, where a newer price simply replaces whatever was in its slot, so outliers can never grow the cache.
+ * <p>
+ * Reads take no locks. Two threads racing on the same empty slot may each create a Price, which is harmless since
+ * Prices are immutable and compare by value.
  */
 public abstract class PriceFactory {
-    private static final HashMap<Integer, Price> prices = new HashMap<>();
+    private static final int DEFAULT_HOT_MIN_CENTS = 0;
+    private static final int DEFAULT_HOT_MAX_CENTS = 100_000;
+    private static final int DEFAULT_OVERFLOW_SIZE = 4096;
+
+    private static volatile Cache cache =
+            new Cache(DEFAULT_HOT_MIN_CENTS, DEFAULT_HOT_MAX_CENTS, DEFAULT_OVERFLOW_SIZE);
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    /**
+     * Holds the two cache tables. A new Cache is swapped in as a whole when the factory is reconfigured.
+     */
+    private static final class Cache {
+        final int hotMinCents;
+        final Price[] hot;
+        final Price[] overflow;
+        final int overflowMask;
+
+        Cache(int hotMinCents, int hotMaxCents, int overflowSize) {
+            this.hotMinCents = hotMinCents;
+            hot = new Price[hotMaxCents - hotMinCents + 1];
+            overflow = new Price[overflowSize];
+            overflowMask = overflowSize - 1;
+        }
+    }
+
+    /**
+     * Replaces the cache with an empty one covering the given hot range. Prices handed out before this call remain
+     * valid.
+     * @param hotMinCents The lowest price, in cents, to keep in the direct-indexed array.
+     * @param hotMaxCents The highest price, in cents, to keep in the direct-indexed array.
+     * @param overflowSize The number of slots for prices outside the hot range. Must be a power of two.
+     * @throws DataValidationException If the hot range is empty or larger than 2^24 cents, or if overflowSize is not a
+     * positive power of two.
+     */
+    public static void configure(int hotMinCents, int hotMaxCents, int overflowSize) throws DataValidationException {
+        if (hotMaxCents < hotMinCents || (long) hotMaxCents - hotMinCents >= 1 << 24) {
+            throw new DataValidationException("Invalid hot price range");
+        }
+        if (overflowSize <= 0 || Integer.bitCount(overflowSize) != 1) {
+            throw new DataValidationException("Invalid overflow size");
+        }
+        cache = new Cache(hotMinCents, hotMaxCents, overflowSize);
+    }
+
+    /**
+     * @return The number of makePrice calls that were answered from the cache.
+     */
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of makePrice calls that had to create a new Price.
+     */
+    public static long getMisses() {
+        return misses.sum();
+    }
 
     /**
      * Creates a Price object from an int.
@@ -17,10 +84,31 @@ public abstract class PriceFactory {
      * @return A new Price object.
      */
     public static Price makePrice(int value) {
-        if (prices.containsKey(value)) return prices.get(value);
+        Cache c = cache;
 
-        Price price = new Price(value);
-        prices.put(value, price);
+        int index = value - c.hotMinCents;
+        if (index >= 0 && index < c.hot.length) {
+            Price price = c.hot[index];
+            if (price == null) {
+                price = new Price(value);
+                c.hot[index] = price;
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            return price;
+        }
+
+        int hash = value * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & c.overflowMask;
+        Price price = c.overflow[slot];
+        if (price == null || price.getCents() != value) {
+            price = new Price(value);
+            c.overflow[slot] = price;
+            misses.increment();
+        } else {
+            hits.increment();
+        }
         return price;
     }
 
@@ -28,26 +116,47 @@ public abstract class PriceFactory {
      * Creates a Price object from a String.
      * @param stringValueIn The String of numbers to be parsed into a Price object.
      * @return A new Price object.
-     * @throws InvalidPriceOperation If the String is null, or if the String contains no numbers.
+     * @throws InvalidPriceOperation If the String is null, or if the String is not a valid price.
      */
     public static Price makePrice(String stringValueIn) throws InvalidPriceOperation {
-        if (stringValueIn == null) {
-            throw new InvalidPriceOperation("makePrice parameter is null");
-        }
+        return makePrice((CharSequence) stringValueIn);
+    }
 
-        String parsedInput = stringValueIn.replaceAll("[^-0-9]", "");
+    /**
+     * Creates a Price object from decimal price text such as "98.10", "$1,234.5" or "-$0.05" (see PriceParser for
+     * the exact format). The text is read in a single pass without creating any intermediate objects.
+     * @param text The price text to be parsed into a Price object.
+     * @return A new Price object.
+     * @throws InvalidPriceOperation If the text is null, is not a valid price, or is too large.
+     */
+    public static Price makePrice(CharSequence text) throws InvalidPriceOperation {
+        return makePrice(PriceParser.parseCents(text));
+    }
 
-        if (parsedInput.equals("")) {
-            throw new InvalidPriceOperation("A price with no numbers?");
+    /**
+     * Creates a Price object from ASCII price text between the buffer's position and limit, e.g. straight out of an
+     * inbound message buffer. The buffer's position is not changed.
+     * @param buffer The buffer holding the price text.
+     * @return A new Price object.
+     * @throws InvalidPriceOperation If the buffer is null, or the text is not a valid price or is too large.
+     */
+    public static Price makePrice(ByteBuffer buffer) throws InvalidPriceOperation {
+        if (buffer == null) {
+            throw new InvalidPriceOperation("makePrice parameter is null");
         }
+        return makePrice(buffer, buffer.position(), buffer.remaining());
+    }
 
-        int value = Integer.parseInt(parsedInput);
-
-        if (prices.containsKey(value)) return prices.get(value);
-
-        Price price = new Price(value);
-        prices.put(value, price);
-        return price;
-
+    /**
+     * Creates a Price object from ASCII price text at a given place in a buffer. The buffer's position is not changed.
+     * @param buffer The buffer holding the price text.
+     * @param offset The index of the first byte of the price text.
+     * @param length The number of bytes of price text.
+     * @return A new Price object.
+     * @throws InvalidPriceOperation If the buffer is null, the range is outside the buffer, or the text is not a valid
+     * price or is too large.
+     */
+    public static Price makePrice(ByteBuffer buffer, int offset, int length) throws InvalidPriceOperation {
+        return makePrice(PriceParser.parseCents(buffer, offset, length));
     }
-}
\ No newline at end of file
+}
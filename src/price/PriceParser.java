@@ -0,0 +1,135 @@
+package price;
+
+import exceptions.InvalidPriceOperation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The PriceParser reads decimal price text (e.g. "98.10", "$1,234.5", "-$0.05", "$-12") into a number of cents in a
+ * single pass, without creating any intermediate objects.
+ * <p>
+ * Accepted format: an optional "-" and an optional "$" in either order, then dollars (digits, optionally grouped in
+ * threes with commas), then an optional "." followed by one or two digits of cents. At least one digit is required,
+ * and nothing else (including whitespace) may appear.
+ */
+final class PriceParser {
+    private PriceParser() {}
+
+    /**
+     * @param text The price text to parse.
+     * @return The price in cents.
+     * @throws InvalidPriceOperation If the text is null, is not a valid price, or does not fit in an int of cents.
+     */
+    static int parseCents(CharSequence text) throws InvalidPriceOperation {
+        if (text == null) {
+            throw new InvalidPriceOperation("makePrice parameter is null");
+        }
+        return parse(text, null, 0, text.length());
+    }
+
+    /**
+     * Parses ASCII price text held in a ByteBuffer. The buffer's position and limit are not changed.
+     * @param buffer The buffer holding the price text.
+     * @param offset The index of the first byte of the price text.
+     * @param length The number of bytes of price text.
+     * @return The price in cents.
+     * @throws InvalidPriceOperation If the buffer is null, the range is outside the buffer, the text is not a valid
+     * price, or the price does not fit in an int of cents.
+     */
+    static int parseCents(ByteBuffer buffer, int offset, int length) throws InvalidPriceOperation {
+        if (buffer == null) {
+            throw new InvalidPriceOperation("makePrice parameter is null");
+        }
+        if (offset < 0 || length < 0 || offset > buffer.limit() - length) {
+            throw new InvalidPriceOperation("Price text is outside the buffer");
+        }
+        return parse(null, buffer, offset, offset + length);
+    }
+
+    /**
+     * Parses the characters [start, end) of either text or buffer (exactly one of which is non-null).
+     */
+    private static int parse(CharSequence text, ByteBuffer buffer, int start, int end) throws InvalidPriceOperation {
+        int i = start;
+        boolean negative = false;
+        boolean dollarSign = false;
+
+        // Optional "-" and "$" prefix, in either order.
+        while (i < end) {
+            char c = charAt(text, buffer, i);
+            if (c == '-' && !negative) {
+                negative = true;
+            } else if (c == '$' && !dollarSign) {
+                dollarSign = true;
+            } else {
+                break;
+            }
+            i++;
+        }
+
+        // Dollars, with optional comma grouping. groupDigits counts the digits since the last comma (or the start).
+        long cents = 0;
+        int dollarDigits = 0;
+        int groupDigits = 0;
+        boolean grouped = false;
+        while (i < end) {
+            char c = charAt(text, buffer, i);
+            if (c >= '0' && c <= '9') {
+                if (grouped && groupDigits == 3) {
+                    throw new InvalidPriceOperation("Misplaced comma in price");
+                }
+                cents = cents * 10 + (c - '0') * 100L;
+                if (cents > Integer.MAX_VALUE + 1L) {
+                    throw new InvalidPriceOperation("Price is too large");
+                }
+                dollarDigits++;
+                groupDigits++;
+            } else if (c == ',') {
+                if (groupDigits == 0 || groupDigits > 3 || (grouped && groupDigits != 3)) {
+                    throw new InvalidPriceOperation("Misplaced comma in price");
+                }
+                grouped = true;
+                groupDigits = 0;
+            } else {
+                break;
+            }
+            i++;
+        }
+        if (grouped && groupDigits != 3) {
+            throw new InvalidPriceOperation("Misplaced comma in price");
+        }
+
+        // Optional cents: "." and one or two digits.
+        int centDigits = 0;
+        if (i < end && charAt(text, buffer, i) == '.') {
+            i++;
+            while (i < end && centDigits < 3) {
+                char c = charAt(text, buffer, i);
+                if (c < '0' || c > '9') break;
+                centDigits++;
+                cents += (c - '0') * (centDigits == 1 ? 10L : 1L);
+                i++;
+            }
+            if (centDigits == 0 || centDigits > 2) {
+                throw new InvalidPriceOperation("A price needs one or two digits after the decimal point");
+            }
+        }
+
+        if (dollarDigits == 0 && centDigits == 0) {
+            throw new InvalidPriceOperation("A price with no numbers?");
+        }
+        if (i != end) {
+            throw new InvalidPriceOperation("Unexpected character in price");
+        }
+
+        long value = negative ? -cents : cents;
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new InvalidPriceOperation("Price is too large");
+        }
+        return (int) value;
+    }
+
+    private static char charAt(CharSequence text, ByteBuffer buffer, int i) {
+        return text != null ? text.charAt(i) : (char) (buffer.get(i) & 0xFF);
+    }
+}
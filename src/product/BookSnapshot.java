@@ -0,0 +1,211 @@
+package product;
+
+import exceptions.DataValidationException;
+import order.Order;
+import order.OrderId;
+import price.Price;
+import price.PriceFactory;
+import user.UserId;
+import user.UserManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes and reads the binary snapshot files of the ProductManager (see writeSnapshot and restoreSnapshot). All
+ * numbers are little-endian:
+ * <pre>
+ * file:  int magic, int version, long id sequence (OrderId.lastSequence()), int book count, then each book
+ * book:  long symbol (SymbolRegistry.encode), byte BookType, byte OrderStorage, short unused, int order count,
+ *        then the BUY side and the SELL side
+ * side:  int level count, then each level best price first
+ * level: int price in cents, int order count, then each order in time priority
+ * order: long id sequence number, int user (UserId code), int original, remaining, filled and cancelled volume
+ * </pre>
+ * Levels and orders are written in the order the book would match them, so restoring a book only appends to the
+ * back of each level's queue; nothing is searched or sorted.
+ */
+final class BookSnapshot {
+    static final int LEVEL_BYTES = 8;
+    static final int ORDER_BYTES = 28;
+
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final int BOOK_HEADER_BYTES = 16;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long READ_WINDOW = 64L << 20;
+
+    private BookSnapshot() {}
+
+    /**
+     * Copies one book into a buffer ready to be written to a snapshot file. Runs on the book's thread, and is the
+     * only part of taking a snapshot that holds up the book's matching.
+     */
+    static ByteBuffer copy(ProductBook book) {
+        ProductBookSide buySide = book.getSide(BookSide.BUY);
+        ProductBookSide sellSide = book.getSide(BookSide.SELL);
+        long size = BOOK_HEADER_BYTES + buySide.snapshotSize() + sellSide.snapshotSize();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Book " + book.getProduct() + " is too large to snapshot");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(SymbolRegistry.encode(book.getProduct()))
+                .put((byte) book.type.ordinal())
+                .put((byte) book.storage.ordinal())
+                .putShort((short) 0)
+                .putInt(buySide.getOrderCount() + sellSide.getOrderCount());
+        buySide.writeSnapshot(out);
+        sellSide.writeSnapshot(out);
+        return out.flip();
+    }
+
+    /**
+     * Writes a snapshot file from book copies made by copy(). The file is written next to its final name and moved
+     * into place once it is on disk, so a crash part way through leaves any earlier snapshot intact.
+     */
+    static void write(Path file, long sequence, ByteBuffer[] books) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sequence).putInt(books.length).flip();
+            writeFully(out, header);
+            for (ByteBuffer book : books) {
+                writeFully(out, book);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot file into new books, in the order they were written. Each restored order is pushed to its
+     * user (see UserManager.orderUpdated) and each book's top of book is reported, but nothing else is published.
+     * The OrderId sequence is advanced past the snapshot's.
+     * @throws IOException If the file cannot be read, is not a snapshot, or is cut short.
+     * @throws DataValidationException If the file holds an invalid symbol or order.
+     */
+    static ProductBook[] read(Path file) throws IOException, DataValidationException {
+        try (Input in = new Input(file)) {
+            ByteBuffer header = in.need(20);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            long sequence = header.getLong();
+            ProductBook[] books = new ProductBook[header.getInt()];
+            String[] users = new String[UserId.CODE_COUNT];
+            for (int i = 0; i < books.length; i++) {
+                books[i] = readBook(in, users);
+            }
+            OrderId.advanceTo(sequence);
+            return books;
+        }
+    }
+
+    private static ProductBook readBook(Input in, String[] users)
+            throws IOException, DataValidationException {
+        ByteBuffer header = in.need(BOOK_HEADER_BYTES);
+        String symbol = SymbolRegistry.decode(header.getLong());
+        int type = header.get();
+        int storage = header.get();
+        header.getShort();
+        int orderCount = header.getInt();
+        if (type < 0 || type >= BookType.values().length || storage < 0 || storage >= OrderStorage.values().length) {
+            throw new IOException("Invalid book header for " + symbol);
+        }
+        ProductBook book = new ProductBook(symbol, BookType.values()[type], OrderStorage.values()[storage]);
+        book.reserve(orderCount);
+        for (BookSide side : BookSide.values()) {
+            ProductBookSide bookSide = book.getSide(side);
+            int levelCount = in.need(4).getInt();
+            for (int l = 0; l < levelCount; l++) {
+                ByteBuffer levelHeader = in.need(LEVEL_BYTES);
+                Price price = PriceFactory.makePrice(levelHeader.getInt());
+                int levelOrders = levelHeader.getInt();
+                PriceLevel level = bookSide.restoreLevel(price);
+                for (int o = 0; o < levelOrders; o++) {
+                    ByteBuffer order = in.need(ORDER_BYTES);
+                    long seq = order.getLong();
+                    String user = user(users, order.getInt());
+                    int original = order.getInt();
+                    // A SLOTS store only copies the fields, and the Order is left to the young generation; that
+                    // costs less than recycling it through an OrderPool.
+                    Order restored = new Order(user, symbol, price, original, side, seq);
+                    restored.setRemainingVolume(order.getInt());
+                    restored.setFilledVolume(order.getInt());
+                    restored.setCancelledVolume(order.getInt());
+                    UserManager.getInstance().orderUpdated(restored);
+                    bookSide.restore(restored, level);
+                }
+            }
+        }
+        book.updateMarket();
+        return book;
+    }
+
+    private static String user(String[] users, int code) throws DataValidationException {
+        if (code < 0 || code >= users.length) {
+            throw new DataValidationException("Invalid User");
+        }
+        String user = users[code];
+        if (user == null) {
+            user = UserId.decode(code);
+            users[code] = user;
+        }
+        return user;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        // Heap buffers are copied to a temporary direct buffer by the channel; writing in slices keeps that small.
+        while (buffer.hasRemaining()) {
+            int limit = buffer.limit();
+            buffer.limit(Math.min(limit, buffer.position() + WRITE_BUFFER_SIZE));
+            out.write(buffer);
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * Reads a snapshot file through a window mapped into memory, sliding the window forward as it is used up.
+     */
+    private static final class Input implements AutoCloseable {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        Input(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+        }
+
+        /**
+         * @return The window, positioned at the next unread byte with at least bytes bytes remaining.
+         * @throws IOException If the file ends first.
+         */
+        ByteBuffer need(int bytes) throws IOException {
+            if (window == null || window.remaining() < bytes) {
+                long position = window == null ? 0 : windowStart + window.position();
+                if (size - position < bytes) {
+                    throw new IOException("Snapshot file is cut short");
+                }
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(READ_WINDOW, size - position));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return window;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package product;
+
+/**
+ * Selects how a ProductBook indexes its price levels.
+ * <p>
+ * TREE keeps levels in a sorted tree: O(log L) inserts and removals and no assumptions about where prices fall.
+ * LADDER keeps levels in a dense array indexed by price in cents: O(1) lookups with no hashing or boxing, best for
+ * symbols that trade in a narrow band around a reference price.
+ */
+public enum BookType {
+    TREE, LADDER
+}
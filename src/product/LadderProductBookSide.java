@@ -0,0 +1,230 @@
+package product;
+
+import price.Price;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * A ProductBookSide that keeps its price levels in a dense array indexed by price in cents (one slot per cent), with
+ * a cursor on the best populated slot. Finding a level is an array read, and inserting or removing one is O(1)
+ * apart from moving the best-price cursor past empty slots.
+ * <p>
+ * The array covers a window of prices starting at baseCents. When a price arrives outside the window, the window is
+ * re-centered around every populated level and the new price, doubling in size if it has to, up to MAX_CAPACITY
+ * slots. A level that cannot fit in a window of that size together with the levels already in it is an outlier, and
+ * is kept in a TreeMap instead (as in TreeProductBookSide), so a stray far-off price costs one tree entry rather than
+ * a huge array. This suits symbols that trade in a narrow band; outliers work but are slower.
+ */
+final class LadderProductBookSide extends ProductBookSide {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The largest window, in cents: $10,485.76 of prices, at 4-8 bytes a slot. */
+    private static final int MAX_CAPACITY = 1 << 20;
+
+    /** levels[i] holds the level at price baseCents + i, or null if there are no orders at that price. */
+    private PriceLevel[] levels = new PriceLevel[INITIAL_CAPACITY];
+
+    /** The price, in cents, of levels[0]. Only meaningful while the window holds a level. */
+    private long baseCents;
+
+    /** The index of the best populated slot (highest for BUY, lowest for SELL), or -1 if the window is empty. */
+    private int bestIndex = -1;
+
+    /** The number of levels in the window. */
+    private int windowCount;
+
+    /**
+     * &lt;price in cents, level&gt; of the levels outside the window, sorted best-first; null until the first outlier.
+     * Never holds a price inside the window.
+     */
+    private TreeMap<Long, PriceLevel> outliers;
+
+    /** The first (best) level of outliers, or null if there are none. */
+    private PriceLevel bestOutlier;
+
+    private int levelCount;
+
+    LadderProductBookSide(ProductBook book, BookSide side, OrderLocator locator, OrderStore store) {
+        super(book, side, locator, store);
+    }
+
+    @Override
+    PriceLevel findLevel(Price price) {
+        return findLevel(price.getCents());
+    }
+
+    @Override
+    PriceLevel findLevel(long cents) {
+        if (levelCount == 0) return null;
+        long index = cents - baseCents;
+        if (index >= 0 && index < levels.length) {
+            return levels[(int) index];
+        }
+        return outliers == null ? null : outliers.get(cents);
+    }
+
+    @Override
+    void insertLevel(PriceLevel level) {
+        long cents = level.cents;
+        if (windowCount == 0) {
+            baseCents = cents - levels.length / 2;
+            absorbOutliers();
+        } else if (!inWindow(cents) && !recenter(cents)) {
+            if (outliers == null) {
+                outliers = side == BookSide.BUY ? new TreeMap<>(Comparator.reverseOrder()) : new TreeMap<>();
+            }
+            outliers.put(cents, level);
+            bestOutlier = outliers.firstEntry().getValue();
+            levelCount++;
+            return;
+        }
+        place(level);
+        levelCount++;
+    }
+
+    @Override
+    void removeLevel(PriceLevel level) {
+        levelCount--;
+        if (!inWindow(level.cents)) {
+            outliers.remove(level.cents);
+            Map.Entry<Long, PriceLevel> first = outliers.firstEntry();
+            bestOutlier = first == null ? null : first.getValue();
+            return;
+        }
+        int index = (int) (level.cents - baseCents);
+        levels[index] = null;
+        windowCount--;
+        if (windowCount == 0) {
+            bestIndex = -1;
+        } else if (index == bestIndex) {
+            int step = side == BookSide.BUY ? -1 : 1;
+            do {
+                bestIndex += step;
+            } while (levels[bestIndex] == null);
+        }
+    }
+
+    @Override
+    PriceLevel topOfBook() {
+        PriceLevel best = bestIndex < 0 ? null : levels[bestIndex];
+        if (bestOutlier == null) return best;
+        return best == null || isBetter(bestOutlier.cents, best.cents) ? bestOutlier : best;
+    }
+
+    @Override
+    void forEachLevel(Consumer<PriceLevel> action) {
+        Iterator<PriceLevel> outlying = outliers == null ? null : outliers.values().iterator();
+        PriceLevel nextOutlier = outlying != null && outlying.hasNext() ? outlying.next() : null;
+        if (bestIndex >= 0) {
+            int step = side == BookSide.BUY ? -1 : 1;
+            int seen = 0;
+            for (int i = bestIndex; seen < windowCount; i += step) {
+                if (levels[i] != null) {
+                    seen++;
+                    while (nextOutlier != null && isBetter(nextOutlier.cents, levels[i].cents)) {
+                        action.accept(nextOutlier);
+                        nextOutlier = outlying.hasNext() ? outlying.next() : null;
+                    }
+                    action.accept(levels[i]);
+                }
+            }
+        }
+        while (nextOutlier != null) {
+            action.accept(nextOutlier);
+            nextOutlier = outlying.hasNext() ? outlying.next() : null;
+        }
+    }
+
+    @Override
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * @return True if price a is better for this side than price b.
+     */
+    private boolean isBetter(long a, long b) {
+        return side == BookSide.BUY ? a > b : a < b;
+    }
+
+    private boolean inWindow(long cents) {
+        return cents - baseCents >= 0 && cents - baseCents < levels.length;
+    }
+
+    /**
+     * Puts a level whose price is inside the window into its slot.
+     */
+    private void place(PriceLevel level) {
+        int index = (int) (level.cents - baseCents);
+        levels[index] = level;
+        windowCount++;
+        if (bestIndex < 0 || isBetter(index, bestIndex)) {
+            bestIndex = index;
+        }
+    }
+
+    /**
+     * Moves any outliers that the window now covers into it, so outliers only ever hold prices outside the window.
+     */
+    private void absorbOutliers() {
+        if (outliers == null || outliers.isEmpty()) return;
+        Iterator<PriceLevel> it = outliers.values().iterator();
+        while (it.hasNext()) {
+            PriceLevel level = it.next();
+            if (inWindow(level.cents)) {
+                it.remove();
+                place(level);
+            }
+        }
+        Map.Entry<Long, PriceLevel> first = outliers.firstEntry();
+        bestOutlier = first == null ? null : first.getValue();
+    }
+
+    /**
+     * Moves (and if needed grows) the window so that it covers every populated slot plus the given price, with the
+     * spare room split evenly on both sides.
+     * @param cents The price, in cents, that must fit in the new window.
+     * @return False, leaving the window as it was, if that would take more than MAX_CAPACITY slots.
+     */
+    private boolean recenter(long cents) {
+        if (Math.abs(cents - (baseCents + bestIndex)) >= MAX_CAPACITY) {
+            // Too far from the best level alone; no need to scan for the others.
+            return false;
+        }
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] != null) {
+                low = Math.min(low, i);
+                high = Math.max(high, i);
+            }
+        }
+        long lowCents = Math.min(baseCents + low, cents);
+        long highCents = Math.max(baseCents + high, cents);
+        long span = highCents - lowCents + 1;
+        if (span > MAX_CAPACITY) {
+            return false;
+        }
+
+        int capacity = levels.length;
+        while (capacity < span * 2 && capacity < MAX_CAPACITY) {
+            capacity *= 2;
+        }
+        long newBase = lowCents - (capacity - span) / 2;
+
+        PriceLevel[] newLevels = new PriceLevel[capacity];
+        int shift = (int) (baseCents - newBase);
+        for (int i = low; i <= high; i++) {
+            newLevels[i + shift] = levels[i];
+        }
+        levels = newLevels;
+        baseCents = newBase;
+        bestIndex += shift;
+        absorbOutliers();
+        return true;
+    }
+}
@@ -0,0 +1,49 @@
+package product;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A MatchingShard is one matching thread and its inbound command queue. Every ProductBook assigned to a shard is
+ * only ever touched by that shard's thread, and commands run strictly in the order they were submitted, so each book
+ * sees the same sequence of adds and cancels (and produces the same fills) no matter how many shards are running.
+ */
+final class MatchingShard {
+    private final ExecutorService thread;
+
+    MatchingShard(int index) {
+        thread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "matching-shard-" + index);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues a command to run on this shard's thread.
+     * @param command The command to run.
+     * @return A future completed with the command's result, or exceptionally with whatever it threw.
+     */
+    <T> CompletableFuture<T> submit(Callable<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        thread.execute(() -> {
+            try {
+                result.complete(command.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Stops accepting commands and waits for every queued command to finish.
+     */
+    void shutdown() throws InterruptedException {
+        thread.shutdown();
+        thread.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+}
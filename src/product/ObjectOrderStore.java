@@ -0,0 +1,66 @@
+package product;
+
+import order.Order;
+
+import java.util.Arrays;
+
+/**
+ * An OrderStore that keeps the resting Order objects themselves and updates them in place.
+ */
+final class ObjectOrderStore extends OrderStore {
+    private Order[] orders = new Order[capacity()];
+
+    @Override
+    void store(int slot, Order o) {
+        orders[slot] = o;
+    }
+
+    @Override
+    void clear(int slot) {
+        orders[slot] = null;
+    }
+
+    @Override
+    void grow(int capacity) {
+        orders = Arrays.copyOf(orders, capacity);
+    }
+
+    @Override
+    boolean keepsOrders() {
+        return true;
+    }
+
+    @Override
+    long id(int slot) {
+        return orders[slot].getId();
+    }
+
+    @Override
+    BookSide side(int slot) {
+        return orders[slot].getSide();
+    }
+
+    @Override
+    int remaining(int slot) {
+        return orders[slot].getRemainingVolume();
+    }
+
+    @Override
+    void fill(int slot, int vol) {
+        Order o = orders[slot];
+        o.setFilledVolume(o.getFilledVolume() + vol);
+        o.setRemainingVolume(o.getRemainingVolume() - vol);
+    }
+
+    @Override
+    void cancelRemaining(int slot) {
+        Order o = orders[slot];
+        o.setCancelledVolume(o.getCancelledVolume() + o.getRemainingVolume());
+        o.setRemainingVolume(0);
+    }
+
+    @Override
+    Order order(int slot) {
+        return orders[slot];
+    }
+}
@@ -0,0 +1,102 @@
+package product;
+
+/**
+ * The OrderLocator maps the id of every resting order in one ProductBook to its OrderStore slot, so an order can be
+ * cancelled without knowing its side and without scanning the book. ProductBookSides register an order when it is
+ * added and remove it when it is filled or cancelled.
+ * <p>
+ * Order ids are longs (see order.OrderId), so the index is an open-addressing hash table of primitive keys: no boxing,
+ * and a lookup is a multiply and usually one or two array reads. Ids are never 0, so 0 marks an empty bucket. Like the
+ * rest of the book, the locator is only used by the thread working on the book.
+ */
+final class OrderLocator {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    void put(long id, int slot) {
+        if (size * 2 >= keys.length) resize();
+        int i = bucket(id);
+        while (keys[i] != 0 && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) size++;
+        keys[i] = id;
+        slots[i] = slot;
+    }
+
+    /**
+     * @param orderId The id of the order to find.
+     * @return The order's slot, or -1 if no resting order has that id.
+     */
+    int get(long orderId) {
+        for (int i = bucket(orderId); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == orderId) return slots[i];
+        }
+        return -1;
+    }
+
+    void remove(long orderId) {
+        int i = bucket(orderId);
+        while (keys[i] != orderId) {
+            if (keys[i] == 0) return;
+            i = (i + 1) & mask;
+        }
+        size--;
+
+        // Shift later entries of the same probe run back into the gap, so lookups never stop short at it.
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = bucket(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                slots[gap] = slots[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Grows the table, if needed, so that it holds orderCount orders without resizing again.
+     */
+    void ensureCapacity(int orderCount) {
+        int capacity = keys.length;
+        while (orderCount * 2L >= capacity) {
+            capacity *= 2;
+        }
+        if (capacity > keys.length) resize(capacity);
+    }
+
+    private int bucket(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void resize() {
+        resize(keys.length * 2);
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[capacity];
+        slots = new int[capacity];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int j = bucket(oldKeys[i]);
+            while (keys[j] != 0) {
+                j = (j + 1) & mask;
+            }
+            keys[j] = oldKeys[i];
+            slots[j] = oldSlots[i];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package product;
+
+/**
+ * Selects how a ProductBook stores its resting orders.
+ * <p>
+ * OBJECTS keeps each resting Order object, which the book updates in place; the Order a caller added stays current
+ * while it rests. SLOTS copies each order's fields into primitive arrays indexed by slot and drops the Order object,
+ * so a resting order costs a few array elements instead of an object with its header and references. It suits very
+ * deep books; the events for a stored order are reported through a reusable view rather than the original Order.
+ */
+public enum OrderStorage {
+    OBJECTS, SLOTS
+}
@@ -0,0 +1,190 @@
+package product;
+
+import order.Order;
+
+import java.util.Arrays;
+
+/**
+ * An OrderStore holds the resting orders of one ProductBook in numbered slots. The book sides only ever refer to an
+ * order by its slot: the PriceLevels' time-priority queues are linked through the store's next/prev arrays, and the
+ * OrderLocator maps order ids to slots. How each order's own fields are kept is up to the subclass (see
+ * OrderStorage).
+ * <p>
+ * Freed slots are reused before the arrays grow. Like the rest of the book, a store is only used by the thread
+ * working on the book.
+ */
+abstract class OrderStore {
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** next[slot] is the slot behind it at the same price (or -1); for a free slot, the next free slot. */
+    private int[] next = new int[INITIAL_CAPACITY];
+
+    /** prev[slot] is the slot ahead of it at the same price, or -1. */
+    private int[] prev = new int[INITIAL_CAPACITY];
+
+    /** levels[slot] is the level the order is queued at, or null for a free slot. */
+    private PriceLevel[] levels = new PriceLevel[INITIAL_CAPACITY];
+
+    private int freeHead = -1;
+    private int used;
+    private int size;
+
+    /**
+     * Creates the store selected by storage for a book in the given product.
+     */
+    static OrderStore create(OrderStorage storage, String product) {
+        return storage == OrderStorage.SLOTS ? new SlotOrderStore(product) : new ObjectOrderStore();
+    }
+
+    /**
+     * @return The number of slots the arrays currently have room for.
+     */
+    final int capacity() {
+        return next.length;
+    }
+
+    /**
+     * @return The number of orders in the store.
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * Stores an order and queues it at the back of a level, adding its remaining volume to the level.
+     * @return The order's slot.
+     */
+    final int add(Order o, PriceLevel level) {
+        int slot = allocate();
+        store(slot, o);
+        levels[slot] = level;
+        level.volume += remaining(slot);
+        level.orderCount++;
+        prev[slot] = level.tail;
+        next[slot] = -1;
+        if (level.tail < 0) {
+            level.head = slot;
+        } else {
+            next[level.tail] = slot;
+        }
+        level.tail = slot;
+        return slot;
+    }
+
+    /**
+     * Removes an order from its level's queue, keeping the relative order of the rest, and takes its remaining volume
+     * off the level. This must be called before the order's remaining volume is zeroed.
+     */
+    final void unlink(int slot) {
+        PriceLevel level = levels[slot];
+        level.volume -= remaining(slot);
+        level.orderCount--;
+        if (prev[slot] < 0) {
+            level.head = next[slot];
+        } else {
+            next[prev[slot]] = next[slot];
+        }
+        if (next[slot] < 0) {
+            level.tail = prev[slot];
+        } else {
+            prev[next[slot]] = prev[slot];
+        }
+        prev[slot] = -1;
+        next[slot] = -1;
+    }
+
+    /**
+     * Releases a slot that has been unlinked and reported, so it can be reused.
+     */
+    final void free(int slot) {
+        clear(slot);
+        levels[slot] = null;
+        next[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    /**
+     * @return The slot behind the given one at the same price, or -1 if it is last in line.
+     */
+    final int next(int slot) {
+        return next[slot];
+    }
+
+    final PriceLevel level(int slot) {
+        return levels[slot];
+    }
+
+    /**
+     * Copies (or keeps) the order in a newly allocated slot.
+     */
+    abstract void store(int slot, Order o);
+
+    /**
+     * Drops whatever the slot holds for its order.
+     */
+    abstract void clear(int slot);
+
+    /**
+     * Grows the subclass's per-slot storage to the given capacity.
+     */
+    abstract void grow(int capacity);
+
+    /**
+     * @return True if the store keeps the Order objects it is given, false if it only copies their fields.
+     */
+    abstract boolean keepsOrders();
+
+    abstract long id(int slot);
+
+    abstract BookSide side(int slot);
+
+    abstract int remaining(int slot);
+
+    /**
+     * Moves vol of the order's remaining volume to its filled volume.
+     */
+    abstract void fill(int slot, int vol);
+
+    /**
+     * Moves all of the order's remaining volume to its cancelled volume.
+     */
+    abstract void cancelRemaining(int slot);
+
+    /**
+     * @return An Order with the slot's current state, for events, DTOs and printing. It is only valid until the next
+     * call to order() or until the slot is freed.
+     */
+    abstract Order order(int slot);
+
+    /**
+     * Grows the arrays, if needed, so that orderCount orders fit without growing them again.
+     */
+    final void ensureCapacity(int orderCount) {
+        int capacity = next.length;
+        while (capacity < orderCount) {
+            capacity *= 2;
+        }
+        if (capacity > next.length) resize(capacity);
+    }
+
+    private int allocate() {
+        size++;
+        if (freeHead >= 0) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        if (used == next.length) {
+            resize(next.length * 2);
+        }
+        return used++;
+    }
+
+    private void resize(int capacity) {
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        grow(capacity);
+    }
+}
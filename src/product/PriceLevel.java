@@ -0,0 +1,45 @@
+package product;
+
+import price.Price;
+
+/**
+ * A PriceLevel holds all resting orders at one price on one side of a book, in time priority order. The orders form
+ * a doubly linked FIFO of OrderStore slots (the links live in the store), so the oldest order can be popped and any
+ * order can be unlinked in constant time. The level also keeps a running total of the remaining volume and the number
+ * of orders queued at it, so neither has to be recomputed by walking the queue.
+ */
+final class PriceLevel {
+    final Price price;
+
+    /** The price in cents; what the matching path compares instead of the Price object. */
+    final long cents;
+
+    /** The slot of the oldest order at this price (next to trade), or -1 if the level is empty. */
+    int head = -1;
+
+    /** The slot of the newest order at this price, or -1 if the level is empty. */
+    int tail = -1;
+
+    /** The sum of the remaining volume of every order at this price. */
+    int volume;
+
+    /** The number of orders at this price. */
+    int orderCount;
+
+    PriceLevel(Price price) {
+        this.price = price;
+        this.cents = price.getCents();
+    }
+
+    boolean isEmpty() {
+        return head < 0;
+    }
+
+    /**
+     * Takes a partial fill of an order at this level off the level's volume.
+     * @param vol The volume that was filled.
+     */
+    void reduce(int vol) {
+        volume -= vol;
+    }
+}
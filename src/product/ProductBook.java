@@ -1,12 +1,15 @@
 package product;
 
 import currentmarket.CurrentMarketTracker;
+import event.EventLog;
+import event.EventType;
+import marketdepth.DepthAction;
+import marketdepth.DepthPublisher;
 import order.Order;
 import order.OrderDTO;
-import price.Price;
 import exceptions.DataValidationException;
-import exceptions.InvalidPriceOperation;
 import exceptions.OrderNotFoundException;
+import user.UserManager;
 
 /**
  * A ProductBook maintains the Buy and Sell sides of a stock's "book". A stock's book holds the buy and sell orders for
@@ -18,18 +21,52 @@ import exceptions.OrderNotFoundException;
 public class ProductBook {
     /** A 1-5 letter stock symbol. */
     private final String product;
+
+    /** The product's SymbolRegistry code. */
+    final int productCode;
+    final BookType type;
+    final OrderStorage storage;
     private ProductBookSide buySide;
     private ProductBookSide sellSide;
+    private final OrderLocator locator;
+    private final OrderStore store;
+
+    /** Which MatchingShard owns this book when the ProductManager runs sharded (modulo the number of shards). */
+    int shardIndex;
 
     public ProductBook(String product) throws DataValidationException {
+        this(product, BookType.TREE);
+    }
+
+    /**
+     * Creates a ProductBook whose sides index their price levels as selected by type.
+     */
+    public ProductBook(String product, BookType type) throws DataValidationException {
+        this(product, type, OrderStorage.OBJECTS);
+    }
+
+    /**
+     * Creates a ProductBook whose sides index their price levels as selected by type, and whose resting orders are
+     * stored as selected by storage.
+     */
+    public ProductBook(String product, BookType type, OrderStorage storage) throws DataValidationException {
         this.product = validateProduct(product);
-        buySide = new ProductBookSide(BookSide.BUY);
-        sellSide = new ProductBookSide(BookSide.SELL);
+        this.productCode = SymbolRegistry.getInstance().intern(this.product);
+        this.type = type;
+        this.storage = storage;
+        this.locator = new OrderLocator();
+        this.store = OrderStore.create(storage, this.product);
+        buySide = ProductBookSide.create(type, this, BookSide.BUY, locator, store);
+        sellSide = ProductBookSide.create(type, this, BookSide.SELL, locator, store);
     }
 
-    public OrderDTO add(Order o) throws InvalidPriceOperation, OrderNotFoundException {
+    public String getProduct() {
+        return product;
+    }
+
+    public OrderDTO add(Order o) throws OrderNotFoundException {
         if (o == null) throw new OrderNotFoundException("Order not found");
-        System.out.println("ADD: " + o.getSide() + ": " + o);
+        orderEvent(EventType.ADD, o.getSide(), 0, o);
         OrderDTO dto = o.getSide() == BookSide.BUY
                 ? buySide.add(o)
                 : sellSide.add(o);
@@ -39,7 +76,7 @@ public class ProductBook {
         return dto;
     }
 
-    public OrderDTO cancel(BookSide side, String orderId) throws InvalidPriceOperation {
+    public OrderDTO cancel(BookSide side, long orderId) {
          OrderDTO cancelledDTO = (side == BookSide.BUY)
                 ? buySide.cancel(orderId)
                 : sellSide.cancel(orderId);
@@ -47,16 +84,44 @@ public class ProductBook {
          return cancelledDTO;
     }
 
+    /**
+     * Cancels a resting order in this book using only its id.
+     * @param orderId The id of the order to cancel.
+     * @return The OrderDTO of the cancelled order, or null if no resting order in this book has that id.
+     */
+    public OrderDTO cancel(long orderId) {
+        int slot = locator.get(orderId);
+        if (slot < 0) return null;
+        return cancel(store.side(slot), orderId);
+    }
+
+    /**
+     * Gives direct access to one side of the book, e.g. for benchmarks. Orders added straight to a side are not
+     * matched against the other side; use add() for that.
+     * @return The book's BUY or SELL side.
+     */
+    public ProductBookSide getSide(BookSide side) {
+        return side == BookSide.BUY ? buySide : sellSide;
+    }
+
+    /**
+     * Makes room for orderCount resting orders up front, e.g. before restoring a snapshot, so the book's arrays are
+     * not grown and copied again and again as the orders arrive.
+     */
+    void reserve(int orderCount) {
+        store.ensureCapacity(orderCount);
+        locator.ensureCapacity(orderCount);
+    }
+
     /**
      * Checks to see if the book sides are tradable, and if so, performs the trades. If not, it does nothing.
-     * @throws InvalidPriceOperation If topSellPrice is null.
+     * Prices are compared as primitive cents; an empty side reports a price that can never cross.
      */
-    public void tryTrade() throws InvalidPriceOperation {
-        Price topBuyPrice = buySide.topOfBookPrice();
-        Price topSellPrice = sellSide.topOfBookPrice();
+    public void tryTrade() {
+        long topBuyPrice = buySide.topOfBookCents();
+        long topSellPrice = sellSide.topOfBookCents();
 
-        while (topBuyPrice != null && topSellPrice != null
-                && topBuyPrice.greaterOrEqual(topSellPrice)) {
+        while (topBuyPrice >= topSellPrice) {
             int topBuyVol = buySide.topOfBookVolume();
             int topSellVol = sellSide.topOfBookVolume();
             int volToTrade = Math.min(topBuyVol, topSellVol);
@@ -64,8 +129,8 @@ public class ProductBook {
             sellSide.tradeOut(topSellPrice, volToTrade);
             buySide.tradeOut(topBuyPrice, volToTrade);
 
-            topBuyPrice = buySide.topOfBookPrice();
-            topSellPrice = sellSide.topOfBookPrice();
+            topBuyPrice = buySide.topOfBookCents();
+            topSellPrice = sellSide.topOfBookCents();
         }
     }
     /** This method will validate the ProductBook constructor product parameter and return it if valid.
@@ -74,16 +139,45 @@ public class ProductBook {
      * (1-5 uppercase letters from A-Z, numbers from 0-9, or a ".").
      */
     public String validateProduct(String product) throws DataValidationException {
-        if (product == null || !product.matches("^[A-Z0-9.]{1,5}$")) {
+        if (!SymbolRegistry.isValid(product)) {
             throw new DataValidationException("Invalid Product");
         }
 
         return product;
     }
 
-    private void updateMarket() throws InvalidPriceOperation {
-        Price topBuyPrice = buySide.topOfBookPrice();
-        Price topSellPrice = sellSide.topOfBookPrice();
+    /**
+     * Reports an order event to the EventLog and pushes the order's new state to the user who owns it. Once a FILL or
+     * CANCEL has been reported the order is finished with, so a pooled order is released back to its OrderPool.
+     */
+    void orderEvent(EventType type, BookSide side, int volume, Order o) {
+        EventLog.getInstance().getSink().orderEvent(type, side, volume, o);
+        UserManager.getInstance().orderUpdated(o);
+        if (type == EventType.FILL || type == EventType.CANCEL) {
+            o.release();
+        }
+    }
+
+    /**
+     * Reports a change to one price level to the DepthPublisher, if anyone is watching this book's depth, and follows
+     * it with a snapshot of the whole book when the publisher asks for one. Called by the book sides after the level's
+     * volume has changed.
+     */
+    void levelChanged(BookSide side, PriceLevel level, DepthAction action) {
+        DepthPublisher depth = DepthPublisher.getInstance();
+        if (!depth.hasSubscribers(product)) return;
+        int volume = action == DepthAction.DELETE ? 0 : level.volume;
+        if (depth.publishUpdate(product, side, action, level.price, volume)) {
+            depth.publishSnapshot(product, buySide.depthLevels(), sellSide.depthLevels());
+        }
+    }
+
+    /**
+     * Reports the book's top of book to the CurrentMarketTracker.
+     */
+    void updateMarket() {
+        long topBuyPrice = buySide.isEmpty() ? 0 : buySide.topOfBookCents();
+        long topSellPrice = sellSide.isEmpty() ? 0 : sellSide.topOfBookCents();
         int topBuyVol = buySide.topOfBookVolume();
         int topSellVol = sellSide.topOfBookVolume();
 
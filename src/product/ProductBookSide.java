@@ -1,126 +1,318 @@
 package product;
 
+import event.EventType;
+import marketdepth.DepthAction;
+import marketdepth.DepthLevel;
 import order.Order;
 import order.OrderDTO;
+import order.OrderId;
 import price.Price;
+import user.UserId;
 
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A ProductBookSide maintains the contents of one side (Buy or Sell) of a stock product "book". A product book "side"
  * holds the buy or sell orders for a stock that are not yet tradable.
  * Buy-side orders are in descending order, sell-side orders are in ascending order.
+ * <p>
+ * The order queues, locator bookkeeping and volume totals live here. Orders are referred to by their slot in the
+ * book's OrderStore (see OrderStorage). How the PriceLevels are indexed by price is left to subclasses (see
+ * BookType), which only have to find, insert, remove and walk levels best-first.
  */
-public class ProductBookSide {
-    private final BookSide side;
-    private final HashMap<Price, ArrayList<Order>> bookEntries;
+public abstract class ProductBookSide {
+    private final ProductBook book;
+    protected final BookSide side;
+    private final OrderLocator locator;
+    private final OrderStore store;
 
-    public ProductBookSide(BookSide side) {
+    /**
+     * What topOfBookCents() returns when this side is empty: Long.MIN_VALUE for BUY and Long.MAX_VALUE for SELL, so
+     * an empty side can never look crossed with the other side.
+     */
+    private final long emptyCents;
+
+    /** The sum of the remaining volume of every order resting on this side. */
+    private long totalVolume;
+
+    /** The number of orders resting on this side. */
+    private int orderCount;
+
+    ProductBookSide(ProductBook book, BookSide side, OrderLocator locator, OrderStore store) {
+        this.book = book;
         this.side = side;
-        bookEntries = new HashMap<>();
+        this.locator = locator;
+        this.store = store;
+        emptyCents = side == BookSide.BUY ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates an empty book side using the level index selected by type.
+     */
+    static ProductBookSide create(BookType type, ProductBook book, BookSide side, OrderLocator locator,
+                                  OrderStore store) {
+        return type == BookType.LADDER
+                ? new LadderProductBookSide(book, side, locator, store)
+                : new TreeProductBookSide(book, side, locator, store);
     }
 
     /**
-     * Adds the incoming order to the bookEntries HashMap. If the price for the order does not exist as a key, add the
-     * price to the HashMap as the key and a new ArrayList&lt;Order&gt; as the value. Then add the order to that
-     * ArrayList.
+     * @return The level at the given price, or null if there are no orders at that price.
+     */
+    abstract PriceLevel findLevel(Price price);
+
+    /**
+     * @return The level at the given price in cents, or null if there are no orders at that price.
+     */
+    abstract PriceLevel findLevel(long cents);
+
+    /**
+     * Indexes a new, not yet populated level. No level may already exist at its price.
+     */
+    abstract void insertLevel(PriceLevel level);
+
+    /**
+     * Drops an emptied level from the index.
+     */
+    abstract void removeLevel(PriceLevel level);
+
+    /**
+     * @return The best (highest BUY, lowest SELL) level, or null if the side is empty. Must be O(1).
+     */
+    abstract PriceLevel topOfBook();
+
+    /**
+     * Calls action on every level, best price first.
+     */
+    abstract void forEachLevel(Consumer<PriceLevel> action);
+
+    /**
+     * @return The number of distinct price levels on this side.
+     */
+    public abstract int getLevelCount();
+
+    /**
+     * Adds the incoming order to this side. If no level exists for the order's price, a new PriceLevel is created
+     * for it. Then the order is queued at the back of that level and registered with the locator. If the book's
+     * store only copies order fields, the Order object is finished with once it is stored, and a pooled one is
+     * released.
      * @param o The order to be added.
      * @return An OrderDTO representing the order that was added.
      */
     public OrderDTO add(Order o) {
-        if (!bookEntries.containsKey(o.getPrice())) {
-            bookEntries.put(o.getPrice(), new ArrayList<>());
-            bookEntries.get(o.getPrice()).add(o);
-        } else {
-            bookEntries.get(o.getPrice()).add(o);
-        }
-        return o.makeTradableDTO();
-    }
-
-    // TODO: ..........
-    public OrderDTO cancel(String orderId) {
-        Price p = null;
-        Order o = null;
-        for (var a : bookEntries.entrySet()) {
-            for (var b : a.getValue()) {
-                if (b.getId().equals(orderId)) {
-                    p = a.getKey();
-                    o = b;
-                    break;
-                }
-            }
+        PriceLevel level = findLevel(o.getPrice());
+        boolean newLevel = level == null;
+        if (newLevel) {
+            level = new PriceLevel(o.getPrice());
+            insertLevel(level);
         }
-        if (p == null) return null;
-        bookEntries.get(p).remove(o);
-        o.setCancelledVolume(o.getCancelledVolume() + o.getRemainingVolume());
-        o.setRemainingVolume(0);
-        if (bookEntries.get(p).isEmpty())
-            bookEntries.remove(p);
-        System.out.println("CANCEL: " + side + " Order: " + o.getId() + " Cxl Qty: " + o.getCancelledVolume());
-        return o.makeTradableDTO();
+        OrderDTO dto = o.makeTradableDTO();
+        int slot = store.add(o, level);
+        locator.put(o.getId(), slot);
+        totalVolume += o.getRemainingVolume();
+        orderCount++;
+        if (!store.keepsOrders()) o.release();
+        book.levelChanged(side, level, newLevel ? DepthAction.INSERT : DepthAction.UPDATE);
+        return dto;
     }
 
     /**
-     * @return The highest price in the bookEntries HashMap if the side is BUY, or the lowest price if the side is SELL.
+     * Cancels the remaining volume of a resting order on this side. The order is found through the locator, so the
+     * cost does not depend on how many price levels or orders are in the book.
+     * @param orderId The id of the order to cancel.
+     * @return An OrderDTO of the cancelled order, or null if no order on this side has that id.
+     */
+    public OrderDTO cancel(long orderId) {
+        int slot = locator.get(orderId);
+        if (slot < 0 || store.side(slot) != side) return null;
+
+        PriceLevel level = store.level(slot);
+        totalVolume -= store.remaining(slot);
+        store.unlink(slot);
+        locator.remove(orderId);
+        orderCount--;
+        store.cancelRemaining(slot);
+        if (level.isEmpty()) removeLevel(level);
+        book.levelChanged(side, level, level.isEmpty() ? DepthAction.DELETE : DepthAction.UPDATE);
+        Order o = store.order(slot);
+        OrderDTO dto = o.makeTradableDTO();
+        book.orderEvent(EventType.CANCEL, side, 0, o);
+        store.free(slot);
+        return dto;
+    }
+
+    /**
+     * @return The highest price on this side if the side is BUY, or the lowest price if the side is SELL.
      */
     public Price topOfBookPrice() {
-        if (bookEntries.isEmpty()) return null;
+        PriceLevel top = topOfBook();
+        return top == null ? null : top.price;
+    }
 
-        TreeMap<Price, ArrayList<Order>> sortedBook =
-                side == BookSide.BUY
-                ? new TreeMap<>(Comparator.reverseOrder())
-                : new TreeMap<>();
 
-        sortedBook.putAll(bookEntries);
-        return sortedBook.firstKey();
+    /**
+     * @return The highest price in cents on this side if the side is BUY, or the lowest if the side is SELL. An empty
+     * BUY side returns Long.MIN_VALUE and an empty SELL side returns Long.MAX_VALUE.
+     */
+    public long topOfBookCents() {
+        PriceLevel top = topOfBook();
+        return top == null ? emptyCents : top.cents;
     }
 
+    /**
+     * @return True if there are no orders on this side.
+     */
+    public boolean isEmpty() {
+        return topOfBook() == null;
+    }
 
     /**
-     * @return The total of all order volumes at the highest price in the bookEntries HashMap if the side is BUY,
+     * @return The total of all order volumes at the highest price on this side if the side is BUY,
      * or the lowest if the side is SELL.
      */
     public int topOfBookVolume() {
-        if (bookEntries.isEmpty()) return 0;
+        PriceLevel top = topOfBook();
+        return top == null ? 0 : top.volume;
+    }
 
-        TreeMap<Price, ArrayList<Order>> sortedBook =
-                side == BookSide.BUY
-                        ? new TreeMap<>(Comparator.reverseOrder())
-                        : new TreeMap<>();
+    /**
+     * @param price The price of the level to look up.
+     * @return The total remaining volume of all orders at that price on this side, or 0 if there are none.
+     */
+    public int volumeAt(Price price) {
+        PriceLevel level = findLevel(price);
+        return level == null ? 0 : level.volume;
+    }
 
-        sortedBook.putAll(bookEntries);
-        int totalVol = 0;
-        for (Order order : bookEntries.get(sortedBook.firstKey())) {
-            totalVol += order.getRemainingVolume();
-        }
-        return totalVol;
+    /**
+     * @param price The price of the level to look up.
+     * @return The number of orders at that price on this side.
+     */
+    public int orderCountAt(Price price) {
+        PriceLevel level = findLevel(price);
+        return level == null ? 0 : level.orderCount;
+    }
+
+    /**
+     * @return The total remaining volume of all orders resting on this side.
+     */
+    public long getTotalVolume() {
+        return totalVolume;
+    }
+
+    /**
+     * @return The number of orders resting on this side.
+     */
+    public int getOrderCount() {
+        return orderCount;
     }
 
     /**
      * Trade out any orders at or better than the Price passed in, up to the volume value passed in.
      */
     public void tradeOut(Price price, int vol) {
+        tradeOut(price.getCents(), vol);
+    }
+
+    /**
+     * Trade out orders at the price in cents passed in, in time priority, up to the volume value passed in.
+     */
+    public void tradeOut(long priceCents, int vol) {
         int remVol = vol;
-        ArrayList<Order> orders = bookEntries.get(price);
+        PriceLevel level = findLevel(priceCents);
 
         while (remVol > 0) {
-            Order order = orders.get(0);
-            if (order.getRemainingVolume() <= remVol) {
-                bookEntries.get(price).remove(order);
-                int currentOrderRemVol = order.getRemainingVolume();
-                order.setFilledVolume(order.getFilledVolume() + currentOrderRemVol);
-                order.setRemainingVolume(0);
+            int slot = level.head;
+            int currentOrderRemVol = store.remaining(slot);
+            if (currentOrderRemVol <= remVol) {
+                store.unlink(slot);
+                locator.remove(store.id(slot));
+                orderCount--;
+                store.fill(slot, currentOrderRemVol);
                 remVol -= currentOrderRemVol;
-                System.out.println("FILL: (" + side + " " + currentOrderRemVol + ") " + order);
+                book.orderEvent(EventType.FILL, side, currentOrderRemVol, store.order(slot));
+                store.free(slot);
             } else {
-                order.setFilledVolume(order.getFilledVolume() + remVol);
-                order.setRemainingVolume(order.getRemainingVolume() - remVol);
-                System.out.println("PARTIAL FILL: (" + side + " " + remVol + ") " + order);
+                level.reduce(remVol);
+                store.fill(slot, remVol);
+                book.orderEvent(EventType.PARTIAL_FILL, side, remVol, store.order(slot));
                 remVol = 0;
             }
         }
-        if (orders.isEmpty()) bookEntries.remove(price);
+        totalVolume -= vol;
+        if (level.isEmpty()) removeLevel(level);
+        book.levelChanged(side, level, level.isEmpty() ? DepthAction.DELETE : DepthAction.UPDATE);
+    }
+
+    /**
+     * @return Every level on this side, best price first, as DepthLevels for a depth snapshot.
+     */
+    DepthLevel[] depthLevels() {
+        DepthLevel[] levels = new DepthLevel[getLevelCount()];
+        int[] next = new int[1];
+        forEachLevel(level -> levels[next[0]++] = new DepthLevel(level.price, level.volume));
+        return levels;
+    }
+
+    /**
+     * Adds a DTO of every order on this side to the list, best price first and in time priority at each price.
+     */
+    void restingOrders(List<OrderDTO> out) {
+        forEachLevel(level -> {
+            for (int slot = level.head; slot >= 0; slot = store.next(slot)) {
+                out.add(store.order(slot).makeTradableDTO());
+            }
+        });
+    }
+
+    /**
+     * @return The number of bytes writeSnapshot() will write.
+     */
+    long snapshotSize() {
+        return 4 + (long) getLevelCount() * BookSnapshot.LEVEL_BYTES + (long) orderCount * BookSnapshot.ORDER_BYTES;
+    }
 
+    /**
+     * Writes every level on this side, best price first, each followed by its orders in time priority (see
+     * BookSnapshot for the format).
+     */
+    void writeSnapshot(ByteBuffer out) {
+        out.putInt(getLevelCount());
+        forEachLevel(level -> {
+            out.putInt((int) level.cents).putInt(level.orderCount);
+            for (int slot = level.head; slot >= 0; slot = store.next(slot)) {
+                Order o = store.order(slot);
+                out.putLong(OrderId.sequence(o.getId()))
+                        .putInt(UserId.encode(o.getUser()))
+                        .putInt(o.getOriginalVolume())
+                        .putInt(o.getRemainingVolume())
+                        .putInt(o.getFilledVolume())
+                        .putInt(o.getCancelledVolume());
+            }
+        });
+    }
+
+    /**
+     * Creates and indexes an empty level while restoring a snapshot. No level may already exist at its price.
+     */
+    PriceLevel restoreLevel(Price price) {
+        PriceLevel level = new PriceLevel(price);
+        insertLevel(level);
+        return level;
+    }
+
+    /**
+     * Queues a restored order at the back of its level, as add() does but without matching or reporting anything.
+     * If the store only copies order fields, a pooled order is released.
+     */
+    void restore(Order o, PriceLevel level) {
+        int slot = store.add(o, level);
+        locator.put(o.getId(), slot);
+        totalVolume += o.getRemainingVolume();
+        orderCount++;
+        if (!store.keepsOrders()) o.release();
     }
 
     /**
@@ -142,22 +334,16 @@ public class ProductBookSide {
      */
     @Override
     public String toString() {
-        TreeMap<Price, ArrayList<Order>> sortedBook =
-                side == BookSide.BUY
-                        ? new TreeMap<>(Comparator.reverseOrder())
-                        : new TreeMap<>();
-
-        sortedBook.putAll(bookEntries);
-
         StringBuilder sideSummary = new StringBuilder();
         sideSummary.append("Side: ").append(side).append("\n");
-        if (sortedBook.isEmpty()) {
+        if (topOfBook() == null) {
             sideSummary.append("     <Empty>\n");
         } else {
-            sortedBook.forEach((price, orders) -> {
-                sideSummary.append(" Price: ").append(price).append("\n");
-                orders.forEach(order ->
-                        sideSummary.append("     ").append(order).append("\n"));
+            forEachLevel(level -> {
+                sideSummary.append(" Price: ").append(level.price).append("\n");
+                for (int slot = level.head; slot >= 0; slot = store.next(slot)) {
+                    sideSummary.append("     ").append(store.order(slot)).append("\n");
+                }
             });
         }
 
@@ -165,12 +351,3 @@ public class ProductBookSide {
     }
 
 }
-
-//    private ArrayList<Price.Price> getSortedPrices() {
-//        ArrayList<Price.Price> sorted = new ArrayList<>(bookEntries.keySet());
-//        Collections.sort(sorted);
-//        if (side == product.BookSide.BUY) {
-//            Collections.reverse(sorted);
-//        }
-//        return sorted;
-//    }
\ No newline at end of file
@@ -1,52 +1,237 @@
 package product;
 
 import exceptions.DataValidationException;
-import exceptions.InvalidPriceOperation;
 import exceptions.OrderNotFoundException;
+import journal.OrderJournal;
 import order.Order;
 import order.OrderDTO;
+import order.OrderId;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The ProductManager class is a singleton that maintains a collection of ProductBook objects for all stocks used
  * in the system, it acts as a Facade to the ProductBooks.
+ * <p>
+ * By default every call runs on the caller's thread. After startSharded(n), each book is owned by one of n
+ * MatchingShard threads (books are dealt out to shards in the order they were added), and adds and cancels are
+ * queued to the owning shard. The *Async methods return as soon as the command is queued; the plain methods wait
+ * for the result. Books on different shards match in parallel, and each book still processes its commands one at a
+ * time in the order they were submitted.
+ * <p>
+ * If a journal is set (see setJournal), each add and cancel is appended to it on the book's thread just before the
+ * book processes it, so the journal holds every book's commands in the order they were matched.
  */
 public final class ProductManager {
-    private static ProductManager instance;
+    private static final ProductManager instance = new ProductManager();
 
     private ProductManager() {}
 
     public static ProductManager getInstance() {
-        if (instance == null) {
-            instance = new ProductManager();
-        }
-
         return instance;
     }
 
-    private final HashMap<String, ProductBook> books = new HashMap<>();
+    /**
+     * booksByCode[code] is the book for the symbol with that SymbolRegistry code, or null. Replaced (never modified)
+     * when a book is added, so lookups need no locks.
+     */
+    private volatile ProductBook[] booksByCode = new ProductBook[0];
+
+    /** Every book, in the order they were added. Replaced (never modified) when a book is added. */
+    private volatile ProductBook[] bookList = new ProductBook[0];
+
+    /** The matching threads, or null if commands run on the caller's thread. */
+    private volatile MatchingShard[] shards;
+
+    /** The shard slot the next added book will get. */
+    private int nextShardIndex;
+
+    /** The journal adds and cancels are appended to, or null. */
+    private volatile OrderJournal journal;
 
     /**
-     * Creates a new ProductBook object for the stock symbol passed in, and adds it to the books HashMap.
+     * Creates a new ProductBook object for the stock symbol passed in, and adds it to the books.
      * @param symbol The stock symbol to create a ProductBook with.
      * @throws DataValidationException If the symbol is null or doesn't match the pattern ^[A-Z0-9.]{1,5}$
      * (1-5 uppercase letters from A-Z, numbers from 0-9, or a ".").
      */
     public void addProduct(String symbol) throws DataValidationException {
-        ProductBook product = new ProductBook(symbol);
-        books.put(symbol, product);
+        addProduct(symbol, BookType.TREE);
+    }
+
+    /**
+     * Creates a new ProductBook object for the stock symbol passed in, using the given price level index for both of
+     * its sides, and adds it to the books. Use BookType.LADDER for symbols whose prices stay in a narrow band
+     * and BookType.TREE for anything else.
+     * @param symbol The stock symbol to create a ProductBook with.
+     * @param type How the book's sides should index their price levels.
+     * @throws DataValidationException If the symbol is null or doesn't match the pattern ^[A-Z0-9.]{1,5}$
+     * (1-5 uppercase letters from A-Z, numbers from 0-9, or a ".").
+     */
+    public void addProduct(String symbol, BookType type) throws DataValidationException {
+        addProduct(symbol, type, OrderStorage.OBJECTS);
+    }
+
+    /**
+     * Creates a new ProductBook object for the stock symbol passed in, using the given price level index and order
+     * storage, and adds it to the books. OrderStorage.SLOTS suits books expected to hold very many resting orders.
+     * @param symbol The stock symbol to create a ProductBook with.
+     * @param type How the book's sides should index their price levels.
+     * @param storage How the book should store its resting orders.
+     * @throws DataValidationException If the symbol is null or doesn't match the pattern ^[A-Z0-9.]{1,5}$
+     * (1-5 uppercase letters from A-Z, numbers from 0-9, or a ".").
+     */
+    public synchronized void addProduct(String symbol, BookType type, OrderStorage storage)
+            throws DataValidationException {
+        install(new ProductBook(symbol, type, storage));
+    }
+
+    /**
+     * Adds a book to the books, replacing any existing book for the same symbol.
+     */
+    private void install(ProductBook product) {
+        product.shardIndex = nextShardIndex++;
+
+        int code = product.productCode;
+        ProductBook[] byCode = booksByCode;
+        ProductBook replaced = code < byCode.length ? byCode[code] : null;
+        byCode = Arrays.copyOf(byCode, Math.max(byCode.length, code + 1));
+        byCode[code] = product;
+
+        ProductBook[] list = bookList;
+        if (replaced == null) {
+            list = Arrays.copyOf(list, list.length + 1);
+            list[list.length - 1] = product;
+        } else {
+            list = list.clone();
+            list[Arrays.asList(list).indexOf(replaced)] = product;
+        }
+        booksByCode = byCode;
+        bookList = list;
     }
 
     /**
-     * @return A randomly selected product symbol from the books HashMap.
+     * Writes a binary snapshot of every book to a file: each side's levels, best price first, with their orders in
+     * time priority and their volumes, plus the OrderId sequence. Each book is copied into memory on its own thread
+     * (its shard's, when running sharded) between two commands, and written out once every book has been copied, so
+     * a book only stops matching while it is copied. Each book is captured at a consistent point, though not
+     * necessarily the same point as the others.
+     * @param file The snapshot file; replaced once the new snapshot is complete.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        ProductBook[] list = bookList;
+        List<CompletableFuture<ByteBuffer>> copies = new ArrayList<>(list.length);
+        for (ProductBook book : list) {
+            copies.add(run(book, () -> BookSnapshot.copy(book)));
+        }
+        ByteBuffer[] books = new ByteBuffer[list.length];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = awaitUnchecked(copies.get(i));
+        }
+        // Read after every copy was made, so it covers every id in them.
+        BookSnapshot.write(file, OrderId.lastSequence(), books);
+    }
+
+    /**
+     * Replaces the books with those in a snapshot file written by writeSnapshot. A book is created for every
+     * symbol in the snapshot, with the same BookType and OrderStorage, holding the same orders (with the same ids and
+     * volumes) in the same priority; books for symbols not in the snapshot are left alone. Restored orders are pushed
+     * to their users, and later orders get ids after the snapshot's.
+     * @param file The snapshot file.
+     * @return The number of books restored.
+     * @throws IOException If the file cannot be read, is not a snapshot, or is cut short.
+     * @throws DataValidationException If the file holds an invalid symbol or order.
+     * @throws IllegalStateException If the manager is running sharded.
+     */
+    public synchronized int restoreSnapshot(Path file) throws IOException, DataValidationException {
+        if (shards != null) {
+            throw new IllegalStateException("Cannot restore a snapshot while running sharded");
+        }
+        ProductBook[] books = BookSnapshot.read(file);
+        for (ProductBook book : books) {
+            install(book);
+        }
+        return books.length;
+    }
+
+    /**
+     * Starts shardCount matching threads and hands every book (existing and future) to one of them. Until
+     * stopSharded() is called, all adds and cancels for a book run on its shard's thread.
+     * @param shardCount The number of matching threads to start.
+     * @throws DataValidationException If shardCount is less than 1.
+     * @throws IllegalStateException If the manager is already running sharded.
+     */
+    public synchronized void startSharded(int shardCount) throws DataValidationException {
+        if (shardCount < 1) {
+            throw new DataValidationException("Invalid shard count");
+        }
+        if (shards != null) {
+            throw new IllegalStateException("Already running sharded");
+        }
+        MatchingShard[] newShards = new MatchingShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            newShards[i] = new MatchingShard(i);
+        }
+        shards = newShards;
+    }
+
+    /**
+     * Waits for every queued command to finish, stops the matching threads, and goes back to running commands on the
+     * caller's thread. Does nothing if the manager is not running sharded.
+     * @throws InterruptedException If interrupted while waiting for the shards to drain.
+     */
+    public synchronized void stopSharded() throws InterruptedException {
+        MatchingShard[] oldShards = shards;
+        if (oldShards == null) return;
+        shards = null;
+        for (MatchingShard shard : oldShards) {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * @return A randomly selected product symbol from the books.
      */
     public String getRandomProduct() {
-        ArrayList<String> symbols = new ArrayList<>(books.keySet());
-        int randomIndex = new Random().nextInt(symbols.size());
-        return symbols.get(randomIndex);
+        return getRandomProduct(ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param random The source of randomness, e.g. a seeded Random for a reproducible run.
+     * @return A randomly selected product symbol from the books.
+     */
+    public String getRandomProduct(Random random) {
+        ProductBook[] list = bookList;
+        return list[random.nextInt(list.length)].getProduct();
+    }
+
+    /**
+     * Lists the orders resting in a book, in the order they would trade: the BUY side best price first, then the SELL
+     * side best price first, in time priority at each price. When running sharded, the list is made on the book's
+     * shard between two commands.
+     * @param symbol The stock symbol of the book.
+     * @return OrderDTOs of the resting orders, or an empty list if there is no book for the symbol.
+     */
+    public List<OrderDTO> getRestingOrders(String symbol) {
+        ProductBook book = bookFor(SymbolRegistry.getInstance().codeOf(symbol));
+        if (book == null) return new ArrayList<>();
+        return awaitUnchecked(run(book, () -> {
+            List<OrderDTO> orders = new ArrayList<>();
+            book.getSide(BookSide.BUY).restingOrders(orders);
+            book.getSide(BookSide.SELL).restingOrders(orders);
+            return orders;
+        }));
     }
 
     /**
@@ -54,26 +239,157 @@ public final class ProductManager {
      * it goes to.
      * @param o The Order to be added.
      * @return An OrderDTO representing the order that was added.
-     * @throws OrderNotFoundException If o is null.
+     * @throws OrderNotFoundException If o is null or there is no book for its product.
      */
-    public OrderDTO addOrder(Order o) throws OrderNotFoundException, InvalidPriceOperation {
-        String symbol = o.getProduct();
-        return books.get(symbol).add(o);
+    public OrderDTO addOrder(Order o) throws OrderNotFoundException {
+        return await(addOrderAsync(o));
     }
 
     /**
-     * Using the String product symbol from the OrderDTO passed in, find the ProductBook and call that its
-     * cancel method.
+     * Queues the Order o to be added to its ProductBook (see addOrder). When not running sharded, the order is added
+     * before this method returns.
+     * @param o The Order to be added.
+     * @return A future completed with the OrderDTO of the added order, or exceptionally with an
+     * OrderNotFoundException if o is null or there is no book for its product.
+     */
+    public CompletableFuture<OrderDTO> addOrderAsync(Order o) {
+        if (o == null) {
+            return CompletableFuture.failedFuture(new OrderNotFoundException("Order not found"));
+        }
+        ProductBook book = bookFor(o.getProductCode());
+        if (book == null) {
+            return CompletableFuture.failedFuture(new OrderNotFoundException("No book for " + o.getProduct()));
+        }
+        return run(book, () -> {
+            OrderJournal j = journal;
+            if (j != null) j.appendAdd(o);
+            return book.add(o);
+        });
+    }
+
+    /**
+     * Cancels the order described by the OrderDTO passed in.
      * @param o The OrderDTO to be cancelled.
      * @return The OrderDTO of the cancelled order or null if the cancellation failed.
      */
-    public OrderDTO cancel(OrderDTO o) throws InvalidPriceOperation {
-        ProductBook book = books.get(o.product);
-        OrderDTO cancelledOrder = book.cancel(o.side, o.id);
+    public OrderDTO cancel(OrderDTO o) {
+        return reportCancel(awaitUnchecked(cancelAsync(o)));
+    }
+
+    /**
+     * Queues a cancel of the order described by the OrderDTO passed in. The cancel is routed by the OrderDTO's
+     * product, so it is queued behind any earlier add of the same order even if that add has not run yet.
+     * @param o The OrderDTO to be cancelled.
+     * @return A future completed with the OrderDTO of the cancelled order, or with null if the cancellation failed.
+     */
+    public CompletableFuture<OrderDTO> cancelAsync(OrderDTO o) {
+        ProductBook book = bookFor(SymbolRegistry.getInstance().codeOf(o.product));
+        if (book == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return run(book, () -> cancel(book, o.id));
+    }
+
+    /**
+     * Cancels the order with the given id in whichever ProductBook and side it rests on. The book is found from the
+     * product encoded in the id (see OrderId).
+     * @param orderId The id of the order to be cancelled.
+     * @return The OrderDTO of the cancelled order or null if the cancellation failed (e.g. the order was already
+     * filled or cancelled).
+     */
+    public OrderDTO cancel(long orderId) {
+        return reportCancel(awaitUnchecked(cancelAsync(orderId)));
+    }
+
+    /**
+     * Queues a cancel of the order with the given id on the shard that owns its book. Since the book is found from
+     * the id itself, the cancel is queued behind any earlier add of the same order.
+     * @param orderId The id of the order to be cancelled.
+     * @return A future completed with the OrderDTO of the cancelled order, or with null if the cancellation failed.
+     */
+    public CompletableFuture<OrderDTO> cancelAsync(long orderId) {
+        ProductBook book = bookFor(OrderId.productCode(orderId));
+        if (book == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return run(book, () -> cancel(book, orderId));
+    }
+
+    /**
+     * Sets the journal every add and cancel is appended to before it is matched (see OrderJournal). Commands already
+     * queued to a shard are journaled if they have not run yet.
+     * @param journal The journal, or null to stop journaling.
+     */
+    public void setJournal(OrderJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Journals and runs a cancel on the book's thread.
+     */
+    private OrderDTO cancel(ProductBook book, long orderId) {
+        OrderJournal j = journal;
+        if (j != null) j.appendCancel(orderId);
+        return book.cancel(orderId);
+    }
+
+    /**
+     * @return The book for the symbol with the given SymbolRegistry code, or null if there is none.
+     */
+    private ProductBook bookFor(int productCode) {
+        ProductBook[] byCode = booksByCode;
+        return productCode >= 0 && productCode < byCode.length ? byCode[productCode] : null;
+    }
+
+    /**
+     * Tells the console about a failed cancel. Only the blocking cancel methods do this, on the caller's thread; the
+     * *Async methods just complete with null, so a failed cancel costs a matching shard no console I/O.
+     */
+    private static OrderDTO reportCancel(OrderDTO cancelledOrder) {
         if (cancelledOrder == null) System.out.println("The cancel process has failed.");
         return cancelledOrder;
     }
 
+    /**
+     * Runs a command against a book: on the book's shard thread when running sharded, or right away otherwise.
+     */
+    private <T> CompletableFuture<T> run(ProductBook book, Callable<T> command) {
+        MatchingShard[] current = shards;
+        if (current != null) {
+            return current[book.shardIndex % current.length].submit(command);
+        }
+        try {
+            return CompletableFuture.completedFuture(command.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for a future from addOrderAsync, rethrowing whatever the add threw.
+     */
+    private static <T> T await(CompletableFuture<T> future) throws OrderNotFoundException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OrderNotFoundException) throw (OrderNotFoundException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a future whose command throws no checked exceptions, rethrowing whatever it threw.
+     */
+    private static <T> T awaitUnchecked(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
     /**
      * Example output:
      * Product: AMZN
@@ -106,7 +422,7 @@ public final class ProductManager {
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
-        for (var book : books.values()) {
+        for (var book : bookList) {
             s.append(book.toString()).append("\n");
         }
 
@@ -0,0 +1,189 @@
+package product;
+
+import order.Order;
+import price.Price;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An OrderStore that copies each order's fields into primitive arrays (one array per field, indexed by slot) and
+ * keeps no Order objects. A resting order costs about 40 bytes spread over the arrays, with no object header and
+ * nothing for the GC to trace; the price comes from the order's PriceLevel and the product from the book, and user
+ * codes are interned per store.
+ * <p>
+ * Events and DTOs need an Order, so order() positions a single reusable view on the slot; the view reads and writes
+ * the arrays directly.
+ */
+final class SlotOrderStore extends OrderStore {
+    private final String product;
+    private final int productCode;
+
+    private long[] ids = new long[capacity()];
+    private int[] users = new int[capacity()];
+    private boolean[] buys = new boolean[capacity()];
+    private int[] originalVolumes = new int[capacity()];
+    private int[] remainingVolumes = new int[capacity()];
+    private int[] filledVolumes = new int[capacity()];
+    private int[] cancelledVolumes = new int[capacity()];
+
+    /** userNames[code] is the user with that code. */
+    private String[] userNames = new String[8];
+    private final HashMap<String, Integer> userCodes = new HashMap<>();
+
+    private final SlotOrder view = new SlotOrder();
+
+    SlotOrderStore(String product) {
+        this.product = product;
+        productCode = SymbolRegistry.getInstance().codeOf(product);
+    }
+
+    @Override
+    void store(int slot, Order o) {
+        ids[slot] = o.getId();
+        users[slot] = userCode(o.getUser());
+        buys[slot] = o.getSide() == BookSide.BUY;
+        originalVolumes[slot] = o.getOriginalVolume();
+        remainingVolumes[slot] = o.getRemainingVolume();
+        filledVolumes[slot] = o.getFilledVolume();
+        cancelledVolumes[slot] = o.getCancelledVolume();
+    }
+
+    @Override
+    void clear(int slot) {
+        ids[slot] = 0;
+    }
+
+    @Override
+    void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        users = Arrays.copyOf(users, capacity);
+        buys = Arrays.copyOf(buys, capacity);
+        originalVolumes = Arrays.copyOf(originalVolumes, capacity);
+        remainingVolumes = Arrays.copyOf(remainingVolumes, capacity);
+        filledVolumes = Arrays.copyOf(filledVolumes, capacity);
+        cancelledVolumes = Arrays.copyOf(cancelledVolumes, capacity);
+    }
+
+    @Override
+    boolean keepsOrders() {
+        return false;
+    }
+
+    @Override
+    long id(int slot) {
+        return ids[slot];
+    }
+
+    @Override
+    BookSide side(int slot) {
+        return buys[slot] ? BookSide.BUY : BookSide.SELL;
+    }
+
+    @Override
+    int remaining(int slot) {
+        return remainingVolumes[slot];
+    }
+
+    @Override
+    void fill(int slot, int vol) {
+        filledVolumes[slot] += vol;
+        remainingVolumes[slot] -= vol;
+    }
+
+    @Override
+    void cancelRemaining(int slot) {
+        cancelledVolumes[slot] += remainingVolumes[slot];
+        remainingVolumes[slot] = 0;
+    }
+
+    @Override
+    Order order(int slot) {
+        view.slot = slot;
+        return view;
+    }
+
+    private int userCode(String user) {
+        Integer code = userCodes.get(user);
+        if (code != null) return code;
+        int newCode = userCodes.size();
+        if (newCode == userNames.length) {
+            userNames = Arrays.copyOf(userNames, newCode * 2);
+        }
+        userNames[newCode] = user;
+        userCodes.put(user, newCode);
+        return newCode;
+    }
+
+    /**
+     * An Order whose state is whichever slot it is positioned on.
+     */
+    private final class SlotOrder extends Order {
+        int slot;
+
+        @Override
+        public String getUser() {
+            return userNames[users[slot]];
+        }
+
+        @Override
+        public String getProduct() {
+            return product;
+        }
+
+        @Override
+        public int getProductCode() {
+            return productCode;
+        }
+
+        @Override
+        public Price getPrice() {
+            return level(slot).price;
+        }
+
+        @Override
+        public BookSide getSide() {
+            return side(slot);
+        }
+
+        @Override
+        public long getId() {
+            return ids[slot];
+        }
+
+        @Override
+        public int getOriginalVolume() {
+            return originalVolumes[slot];
+        }
+
+        @Override
+        public int getRemainingVolume() {
+            return remainingVolumes[slot];
+        }
+
+        @Override
+        public void setRemainingVolume(int amount) {
+            remainingVolumes[slot] = amount;
+        }
+
+        @Override
+        public int getCancelledVolume() {
+            return cancelledVolumes[slot];
+        }
+
+        @Override
+        public void setCancelledVolume(int amount) {
+            cancelledVolumes[slot] = amount;
+        }
+
+        @Override
+        public int getFilledVolume() {
+            return filledVolumes[slot];
+        }
+
+        @Override
+        public void setFilledVolume(int filledVolume) {
+            filledVolumes[slot] = filledVolume;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package product;
+
+import exceptions.DataValidationException;
+
+import java.util.Arrays;
+
+/**
+ * The SymbolRegistry is a singleton that interns stock symbols to dense int codes (0, 1, 2, ... in the order they are
+ * first seen), so that books and order ids can be found by indexing an array instead of hashing a String.
+ * <p>
+ * A symbol is 1-5 characters from [A-Z0-9.], so it packs losslessly into a long (see encode). Looking a symbol up
+ * encodes it and probes a small open-addressing table of those longs; no String is hashed or compared. The table is
+ * copied whenever a symbol is added, so lookups need no locks. Symbols are expected to be added rarely (new products),
+ * and at most MAX_SYMBOLS can be registered.
+ */
+public final class SymbolRegistry {
+    private static final SymbolRegistry instance = new SymbolRegistry();
+
+    /** Codes fit in 15 bits, so they can be packed into the top of a positive 64-bit order id. */
+    public static final int MAX_SYMBOLS = (1 << 15) - 1;
+
+    private static final int MAX_LENGTH = 5;
+    private static final int BITS_PER_CHAR = 6;
+
+    /** An immutable snapshot of the registry. */
+    private static final class Table {
+        /** Encoded symbols; 0 marks an empty bucket (no valid symbol encodes to 0). */
+        final long[] keys;
+        final int[] codes;
+        final int mask;
+
+        /** symbols[code] is the symbol with that code. */
+        final String[] symbols;
+
+        Table(int capacity, String[] symbols) {
+            keys = new long[capacity];
+            codes = new int[capacity];
+            mask = capacity - 1;
+            this.symbols = symbols;
+            for (int code = 0; code < symbols.length; code++) {
+                long key = encode(symbols[code]);
+                int i = bucket(key, mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                codes[i] = code;
+            }
+        }
+    }
+
+    private volatile Table table = new Table(16, new String[0]);
+
+    private SymbolRegistry() {}
+
+    public static SymbolRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return True if the symbol is 1-5 characters, each an uppercase letter A-Z, a digit 0-9, or a ".".
+     */
+    public static boolean isValid(String symbol) {
+        return encode(symbol) != -1;
+    }
+
+    /**
+     * Packs a symbol into a long, 6 bits per character. Every valid symbol has a distinct, non-zero encoding.
+     * @return The encoded symbol, or -1 if the symbol is null or not valid (see isValid).
+     */
+    public static long encode(String symbol) {
+        if (symbol == null || symbol.isEmpty() || symbol.length() > MAX_LENGTH) return -1;
+        long key = 0;
+        for (int i = 0; i < symbol.length(); i++) {
+            int c = charCode(symbol.charAt(i));
+            if (c == 0) return -1;
+            key = (key << BITS_PER_CHAR) | c;
+        }
+        return key;
+    }
+
+    /**
+     * @return The symbol packed by encode.
+     */
+    public static String decode(long key) {
+        char[] chars = new char[MAX_LENGTH];
+        int start = MAX_LENGTH;
+        for (; key != 0; key >>>= BITS_PER_CHAR) {
+            chars[--start] = codeChar((int) (key & ((1 << BITS_PER_CHAR) - 1)));
+        }
+        return new String(chars, start, MAX_LENGTH - start);
+    }
+
+    /**
+     * Returns the symbol's code, registering it first if it has not been seen before.
+     * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
+     * @return The symbol's dense code.
+     * @throws DataValidationException If the symbol is not valid (see isValid).
+     * @throws IllegalStateException If MAX_SYMBOLS symbols are already registered.
+     */
+    public int intern(String symbol) throws DataValidationException {
+        int code = codeOf(symbol);
+        if (code >= 0) return code;
+        if (!isValid(symbol)) {
+            throw new DataValidationException("Invalid Product");
+        }
+        return register(symbol);
+    }
+
+    /**
+     * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
+     * @return The symbol's code, or -1 if it is not valid or not registered.
+     */
+    public int codeOf(String symbol) {
+        long key = encode(symbol);
+        if (key == -1) return -1;
+        Table t = table;
+        for (int i = bucket(key, t.mask); t.keys[i] != 0; i = (i + 1) & t.mask) {
+            if (t.keys[i] == key) return t.codes[i];
+        }
+        return -1;
+    }
+
+    /**
+     * @return The symbol with the given code, or null if no symbol has that code.
+     */
+    public String symbolOf(int code) {
+        String[] symbols = table.symbols;
+        return code >= 0 && code < symbols.length ? symbols[code] : null;
+    }
+
+    /**
+     * @return The number of registered symbols; codes run from 0 to size() - 1.
+     */
+    public int size() {
+        return table.symbols.length;
+    }
+
+    private synchronized int register(String symbol) {
+        Table t = table;
+        int code = codeOf(symbol);
+        if (code >= 0) return code;
+        code = t.symbols.length;
+        if (code == MAX_SYMBOLS) {
+            throw new IllegalStateException("Too many symbols");
+        }
+        String[] symbols = Arrays.copyOf(t.symbols, code + 1);
+        symbols[code] = symbol;
+        int capacity = t.keys.length;
+        while (capacity < symbols.length * 2) {
+            capacity *= 2;
+        }
+        table = new Table(capacity, symbols);
+        return code;
+    }
+
+    private static int bucket(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * @return 1-26 for A-Z, 27-36 for 0-9, 37 for ".", or 0 if the character cannot appear in a symbol.
+     */
+    private static int charCode(char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 1;
+        if (c >= '0' && c <= '9') return c - '0' + 27;
+        if (c == '.') return 37;
+        return 0;
+    }
+
+    private static char codeChar(int code) {
+        if (code <= 26) return (char) ('A' + code - 1);
+        if (code <= 36) return (char) ('0' + code - 27);
+        return '.';
+    }
+}
@@ -0,0 +1,72 @@
+package product;
+
+import price.Price;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * A ProductBookSide that keeps its price levels in a TreeMap sorted best-first (descending for BUY, ascending for
+ * SELL).
+ */
+final class TreeProductBookSide extends ProductBookSide {
+    /**
+     * &lt;price in cents, level at that price&gt; kept sorted best-first. Keyed on cents rather than Price so that
+     * matching, which only has the cents, can look a level up without going through the PriceFactory.
+     */
+    private final TreeMap<Long, PriceLevel> bookEntries;
+
+    /**
+     * The first (best) level of bookEntries, or null if the side is empty. Refreshed whenever a price level is
+     * added or removed so the top of book can be read without walking the tree.
+     */
+    private PriceLevel topOfBook;
+
+    TreeProductBookSide(ProductBook book, BookSide side, OrderLocator locator, OrderStore store) {
+        super(book, side, locator, store);
+        bookEntries = side == BookSide.BUY
+                ? new TreeMap<>(Comparator.reverseOrder())
+                : new TreeMap<>();
+    }
+
+    @Override
+    PriceLevel findLevel(Price price) {
+        return findLevel(price.getCents());
+    }
+
+    @Override
+    PriceLevel findLevel(long cents) {
+        if (topOfBook != null && topOfBook.cents == cents) return topOfBook;
+        return bookEntries.get(cents);
+    }
+
+    @Override
+    void insertLevel(PriceLevel level) {
+        bookEntries.put(level.cents, level);
+        topOfBook = bookEntries.firstEntry().getValue();
+    }
+
+    @Override
+    void removeLevel(PriceLevel level) {
+        bookEntries.remove(level.cents);
+        Map.Entry<Long, PriceLevel> first = bookEntries.firstEntry();
+        topOfBook = first == null ? null : first.getValue();
+    }
+
+    @Override
+    PriceLevel topOfBook() {
+        return topOfBook;
+    }
+
+    @Override
+    void forEachLevel(Consumer<PriceLevel> action) {
+        bookEntries.values().forEach(action);
+    }
+
+    @Override
+    public int getLevelCount() {
+        return bookEntries.size();
+    }
+}
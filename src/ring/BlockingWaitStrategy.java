@@ -0,0 +1,47 @@
+package ring;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Blocks the consumer on a lock and condition until a producer signals. Uses no CPU while idle, at the cost of a
+ * wake-up delay and a lock acquisition on publish whenever the consumer is asleep.
+ */
+public final class BlockingWaitStrategy implements WaitStrategy {
+    /** The longest a consumer sleeps before returning so it can re-check its shutdown flag. */
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private volatile boolean consumerWaiting;
+
+    @Override
+    public void await(BooleanSupplier ready) {
+        if (ready.getAsBoolean()) return;
+        lock.lock();
+        try {
+            consumerWaiting = true;
+            if (!ready.getAsBoolean()) {
+                published.awaitNanos(MAX_WAIT_NANOS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            consumerWaiting = false;
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signal() {
+        if (!consumerWaiting) return;
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ring;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins on the consumer's core until work arrives. Lowest latency, but the consumer thread uses a full core even when
+ * idle, so it should only be used with a core to spare.
+ */
+public final class BusySpinWaitStrategy implements WaitStrategy {
+    @Override
+    public void await(BooleanSupplier ready) {
+        while (!ready.getAsBoolean()) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void signal() {}
+}
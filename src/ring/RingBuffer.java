@@ -0,0 +1,168 @@
+package ring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A RingBuffer is a fixed-size, pre-allocated circular queue of mutable entries that any number of producer threads
+ * can publish into and a single consumer thread drains, without locks.
+ * <p>
+ * A producer claims a sequence number with next(), fills in the entry returned by get(sequence), then makes it
+ * visible with publish(sequence). The consumer calls drain(), which hands every contiguous published entry to a
+ * handler in sequence order and then frees their slots, and waitForPublished() when it has nothing to drain. Entries
+ * are reused, never re-allocated, so a handler must copy anything it wants to keep.
+ * <p>
+ * How an idle consumer waits is up to the ring's WaitStrategy. A producer that finds the ring full parks for the
+ * shortest time possible and retries until the consumer frees a slot.
+ *
+ * @param <E> The type of entry held in each slot.
+ */
+public final class RingBuffer<E> {
+    /**
+     * Receives entries from drain().
+     */
+    public interface Handler<E> {
+        /**
+         * @param entry The published entry. Only valid until this method returns.
+         * @param sequence The entry's sequence number.
+         * @param endOfBatch True if this is the last entry of this drain() call.
+         */
+        void onEntry(E entry, long sequence, boolean endOfBatch);
+    }
+
+    private final Object[] entries;
+    private final int mask;
+
+    /** The next sequence number a producer will claim. */
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    /** published[i] is the sequence number most recently published into slot i (-1 if none yet). */
+    private final AtomicLongArray published;
+
+    /** The last sequence number the consumer has finished with. Producers may not lap it. */
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+
+    private final WaitStrategy waitStrategy;
+
+    /** Set by alert() to release a consumer from waitForPublished() for good, e.g. on shutdown. */
+    private volatile boolean alerted;
+    private final BooleanSupplier nextPublished = this::isNextPublished;
+
+    /**
+     * Creates a ring whose consumer yields while idle (see YieldingWaitStrategy).
+     * @param capacity The number of slots. Must be a power of two.
+     * @param factory Creates the entry object for each slot, once, up front.
+     */
+    public RingBuffer(int capacity, Supplier<E> factory) {
+        this(capacity, factory, new YieldingWaitStrategy());
+    }
+
+    /**
+     * @param capacity The number of slots. Must be a power of two.
+     * @param factory Creates the entry object for each slot, once, up front.
+     * @param waitStrategy How the consumer waits in waitForPublished().
+     */
+    public RingBuffer(int capacity, Supplier<E> factory, WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two");
+        }
+        entries = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = factory.get();
+        }
+        mask = capacity - 1;
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Claims the next slot for this producer, waiting for the consumer if the ring is full.
+     * @return The sequence number of the claimed slot.
+     */
+    public long next() {
+        long sequence = claimSequence.getAndIncrement();
+        long wrapPoint = sequence - entries.length;
+        while (wrapPoint > consumedSequence.get()) {
+            LockSupport.parkNanos(1);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return The entry for a sequence number claimed with next() (producer side) or handed to a Handler (consumer
+     * side).
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+
+    /**
+     * Makes a claimed, filled-in entry visible to the consumer, waking it if it is blocked.
+     */
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        waitStrategy.signal();
+    }
+
+    /**
+     * Waits, as the ring's WaitStrategy decides, until the next entry is published. May return early, so the
+     * consumer should simply drain() and loop.
+     */
+    public void waitForPublished() {
+        waitStrategy.await(nextPublished);
+    }
+
+    /**
+     * Makes waitForPublished() return immediately from now on, so a consumer that is shutting down cannot stay parked
+     * or spinning on an empty ring.
+     */
+    public void alert() {
+        alerted = true;
+        waitStrategy.signal();
+    }
+
+    private boolean isNextPublished() {
+        if (alerted) return true;
+        long next = consumedSequence.get() + 1;
+        return published.get((int) next & mask) == next;
+    }
+
+    /**
+     * @return The number of entries claimed by producers but not yet drained by the consumer.
+     */
+    public long size() {
+        return claimSequence.get() - consumedSequence.get() - 1;
+    }
+
+    /**
+     * Hands up to maxBatch published entries, in sequence order, to the handler, then releases their slots to the
+     * producers. Stops early at the first slot that has been claimed but not yet published. Only one thread may
+     * drain a given RingBuffer.
+     * @param handler Receives each entry.
+     * @param maxBatch The most entries to hand over in this call.
+     * @return The number of entries handed over.
+     */
+    public int drain(Handler<? super E> handler, int maxBatch) {
+        long first = consumedSequence.get() + 1;
+        long last = first - 1;
+        while (last - first + 1 < maxBatch && published.get((int) (last + 1) & mask) == last + 1) {
+            last++;
+        }
+        for (long sequence = first; sequence <= last; sequence++) {
+            handler.onEntry(get(sequence), sequence, sequence == last);
+        }
+        consumedSequence.set(last);
+        return (int) (last - first + 1);
+    }
+}
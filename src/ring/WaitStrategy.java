@@ -0,0 +1,22 @@
+package ring;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A WaitStrategy decides what a RingBuffer consumer does while it has nothing to drain: burn a core for the lowest
+ * latency, yield it to other threads, or block until a producer publishes.
+ */
+public interface WaitStrategy {
+    /**
+     * Waits until ready returns true. May also return early (e.g. after a timeout), so callers must re-check ready
+     * and any shutdown flag they have.
+     * @param ready Reports whether there is something to drain.
+     */
+    void await(BooleanSupplier ready);
+
+    /**
+     * Wakes any consumer waiting in await. Called by producers after every publish, so it must be cheap when no one
+     * is waiting.
+     */
+    void signal();
+}
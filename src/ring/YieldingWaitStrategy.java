@@ -0,0 +1,27 @@
+package ring;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins briefly, then yields the core to other threads between checks. A good default: low latency under load,
+ * without starving other threads when the consumer is idle.
+ */
+public final class YieldingWaitStrategy implements WaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public void await(BooleanSupplier ready) {
+        int tries = 0;
+        while (!ready.getAsBoolean()) {
+            if (tries < SPIN_TRIES) {
+                tries++;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public void signal() {}
+}
@@ -0,0 +1,160 @@
+package simulator;
+
+import exceptions.DataValidationException;
+import order.Order;
+import product.BookSide;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+/**
+ * Writes the commands of a simulator run to a compact binary file that CommandReplayer can play back.
+ * <p>
+ * The file starts with a header (magic, version, the run's seed, then its users and products by name) followed by one
+ * record per command. Numbers in records are unsigned variable-length integers (7 bits per byte), so a typical ADD
+ * takes about a dozen bytes:
+ * <pre>
+ *   ADD:    byte 1 (BUY) or 2 (SELL), time since the previous command in ns, user index, product index,
+ *           price in cents, volume
+ *   CANCEL: byte 3, time since the previous command in ns, index of the ADD (counting from 0) whose order to cancel
+ *   END:    byte 0, fill digest and book digest (see SimDigest) as 8-byte longs, number of commands
+ * </pre>
+ * Cancels refer to the order's ADD rather than its id, since ids differ from run to run.
+ */
+public final class CommandRecorder implements AutoCloseable {
+    static final int MAGIC = 0x53494D52;
+    static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int ADD_BUY = 1;
+    static final int ADD_SELL = 2;
+    static final int CANCEL = 3;
+
+    private final DataOutputStream out;
+    private final HashMap<String, Integer> userIndexes = new HashMap<>();
+    private final HashMap<String, Integer> productIndexes = new HashMap<>();
+
+    /** &lt;order id, index of the ADD that created it&gt; */
+    private final HashMap<Long, Integer> addIndexes = new HashMap<>();
+
+    private int addCount;
+    private long commandCount;
+    private long lastNanos;
+
+    /**
+     * Creates (or replaces) a recording and writes its header.
+     * @param file The recording file.
+     * @param seed The seed the run's Random was created with.
+     * @param users The ids of every user the run's orders can come from.
+     * @param products The symbols of every product the run's orders can be for.
+     * @throws IOException If the file cannot be written.
+     */
+    public CommandRecorder(Path file, long seed, String[] users, String[] products) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(seed);
+        writeNames(users, userIndexes);
+        writeNames(products, productIndexes);
+        lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the ADD of a new order. Must be called before the order is handed to the ProductManager.
+     * @throws DataValidationException If the order's user or product was not listed when the recording was created.
+     * @throws IOException If the file cannot be written.
+     */
+    public void recordAdd(Order o) throws DataValidationException, IOException {
+        Integer user = userIndexes.get(o.getUser());
+        Integer product = productIndexes.get(o.getProduct());
+        if (user == null || product == null) {
+            throw new DataValidationException("Order is not from a recorded user and product");
+        }
+        out.writeByte(o.getSide() == BookSide.BUY ? ADD_BUY : ADD_SELL);
+        writeElapsed();
+        writeVarLong(out, user);
+        writeVarLong(out, product);
+        writeVarLong(out, o.getPrice().getCents());
+        writeVarLong(out, o.getOriginalVolume());
+        addIndexes.put(o.getId(), addCount++);
+    }
+
+    /**
+     * Records a CANCEL of an order whose ADD was recorded.
+     * @param orderId The id of the order to cancel.
+     * @throws DataValidationException If no ADD of an order with that id was recorded.
+     * @throws IOException If the file cannot be written.
+     */
+    public void recordCancel(long orderId) throws DataValidationException, IOException {
+        Integer add = addIndexes.get(orderId);
+        if (add == null) {
+            throw new DataValidationException("Order was not recorded");
+        }
+        out.writeByte(CANCEL);
+        writeElapsed();
+        writeVarLong(out, add);
+    }
+
+    /**
+     * Ends the recording with the digests of the run's outcome, so a replay can be checked against it.
+     * @throws IOException If the file cannot be written.
+     */
+    public void finish(long fillDigest, long bookDigest) throws IOException {
+        out.writeByte(END);
+        out.writeLong(fillDigest);
+        out.writeLong(bookDigest);
+        writeVarLong(out, commandCount);
+        out.flush();
+    }
+
+    /**
+     * @return The number of commands recorded so far.
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeNames(String[] names, HashMap<String, Integer> indexes) throws IOException {
+        writeVarLong(out, names.length);
+        for (int i = 0; i < names.length; i++) {
+            out.writeUTF(names[i]);
+            indexes.put(names[i], i);
+        }
+    }
+
+    private void writeElapsed() throws IOException {
+        long now = System.nanoTime();
+        writeVarLong(out, now - lastNanos);
+        lastNanos = now;
+        commandCount++;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed recording");
+    }
+}
@@ -0,0 +1,192 @@
+package simulator;
+
+import exceptions.DataValidationException;
+import order.Order;
+import price.PriceFactory;
+import product.BookSide;
+import product.ProductManager;
+import user.UserManager;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a recording made by CommandRecorder back against the ProductManager, and checks that it produces the same
+ * fills and leaves the same books as the recorded run did.
+ * <p>
+ * A replay starts from a clean market: the recording's users are created again and each of its products gets a new,
+ * empty book. Commands are queued with addOrderAsync and cancelAsync, so a replay runs on the ProductManager's
+ * matching shards if it has been started sharded, and measures the matching throughput of whatever configuration it
+ * runs against.
+ */
+public final class CommandReplayer {
+    /** Below this, waiting for a command's original time spins rather than parks. */
+    private static final long SPIN_NANOS = 50_000;
+
+    private CommandReplayer() {}
+
+    /**
+     * The outcome of a replay.
+     */
+    public static final class Result {
+        public final long commandCount;
+        public final long elapsedNanos;
+        public final long fillDigest;
+        public final long bookDigest;
+        public final long recordedFillDigest;
+        public final long recordedBookDigest;
+
+        Result(long commandCount, long elapsedNanos, long fillDigest, long bookDigest, long recordedFillDigest,
+               long recordedBookDigest) {
+            this.commandCount = commandCount;
+            this.elapsedNanos = elapsedNanos;
+            this.fillDigest = fillDigest;
+            this.bookDigest = bookDigest;
+            this.recordedFillDigest = recordedFillDigest;
+            this.recordedBookDigest = recordedBookDigest;
+        }
+
+        /**
+         * @return True if the replay produced the same fills and left the same books as the recorded run.
+         */
+        public boolean matches() {
+            return fillDigest == recordedFillDigest && bookDigest == recordedBookDigest;
+        }
+
+        /**
+         * @return Commands replayed per second.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : commandCount * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Replayed %,d commands in %,.1f ms (%,.0f commands/s); fills %s, books %s",
+                    commandCount, elapsedNanos / 1e6, getThroughput(),
+                    fillDigest == recordedFillDigest ? "match" : "DIFFER",
+                    bookDigest == recordedBookDigest ? "match" : "DIFFER");
+        }
+    }
+
+    /**
+     * Replays a recording.
+     * @param file The recording.
+     * @param speed Whether to replay as fast as possible or with the recorded spacing between commands.
+     * @return How long the replay took and whether its outcome matched the recording.
+     * @throws IOException If the file cannot be read or is not a complete recording.
+     * @throws DataValidationException If the recording holds an invalid user, product or order.
+     */
+    public static Result replay(Path file, ReplaySpeed speed) throws IOException, DataValidationException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file),
+                64 * 1024))) {
+            if (in.readInt() != CommandRecorder.MAGIC || in.readShort() != CommandRecorder.VERSION) {
+                throw new IOException("Not a recording: " + file);
+            }
+            in.readLong(); // The seed is only kept for reference.
+            String[] users = readNames(in);
+            String[] products = readNames(in);
+
+            ProductManager manager = ProductManager.getInstance();
+            UserManager.getInstance().init(users);
+            for (String product : products) {
+                manager.addProduct(product);
+            }
+
+            SimDigest digest = SimDigest.install();
+            long commandCount = 0;
+            long elapsed;
+            try {
+                // ids[i] and productOf[i] are the id and product index of the order made by the i-th ADD.
+                long[] ids = new long[1024];
+                int[] productOf = new int[1024];
+                int addCount = 0;
+                // The latest command queued for each book; each book runs its commands in order.
+                CompletableFuture<?>[] last = new CompletableFuture<?>[products.length];
+
+                long start = System.nanoTime();
+                long due = start;
+                for (int type = in.readUnsignedByte(); type != CommandRecorder.END; type = in.readUnsignedByte()) {
+                    due += CommandRecorder.readVarLong(in);
+                    if (speed == ReplaySpeed.ORIGINAL) {
+                        waitUntil(due);
+                    }
+                    if (type == CommandRecorder.CANCEL) {
+                        int add = (int) CommandRecorder.readVarLong(in);
+                        if (add >= addCount) {
+                            throw new IOException("Cancel of an order that was never added");
+                        }
+                        last[productOf[add]] = manager.cancelAsync(ids[add]);
+                    } else if (type == CommandRecorder.ADD_BUY || type == CommandRecorder.ADD_SELL) {
+                        String user = name(users, CommandRecorder.readVarLong(in));
+                        int product = (int) CommandRecorder.readVarLong(in);
+                        String symbol = name(products, product);
+                        int cents = (int) CommandRecorder.readVarLong(in);
+                        int volume = (int) CommandRecorder.readVarLong(in);
+                        BookSide side = type == CommandRecorder.ADD_BUY ? BookSide.BUY : BookSide.SELL;
+                        Order o = new Order(user, symbol, PriceFactory.makePrice(cents), volume, side);
+                        if (addCount == ids.length) {
+                            ids = Arrays.copyOf(ids, addCount * 2);
+                            productOf = Arrays.copyOf(productOf, addCount * 2);
+                        }
+                        ids[addCount] = o.getId();
+                        productOf[addCount++] = product;
+                        last[product] = manager.addOrderAsync(o);
+                    } else {
+                        throw new IOException("Malformed recording");
+                    }
+                    commandCount++;
+                }
+                for (CompletableFuture<?> future : last) {
+                    if (future != null) future.join();
+                }
+                elapsed = System.nanoTime() - start;
+            } finally {
+                digest.uninstall();
+            }
+
+            long recordedFills = in.readLong();
+            long recordedBooks = in.readLong();
+            if (CommandRecorder.readVarLong(in) != commandCount) {
+                throw new IOException("Recording is corrupt: wrong command count");
+            }
+            return new Result(commandCount, elapsed, digest.fillDigest(products), SimDigest.bookDigest(products),
+                    recordedFills, recordedBooks);
+        }
+    }
+
+    private static String[] readNames(DataInputStream in) throws IOException {
+        String[] names = new String[(int) CommandRecorder.readVarLong(in)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    private static String name(String[] names, long index) throws IOException {
+        if (index < 0 || index >= names.length) {
+            throw new IOException("Malformed recording");
+        }
+        return names[(int) index];
+    }
+
+    /**
+     * Waits until System.nanoTime() reaches due, parking for most of the wait and spinning for the end of it.
+     */
+    static void waitUntil(long due) {
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
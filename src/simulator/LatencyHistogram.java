@@ -0,0 +1,109 @@
+package simulator;
+
+/**
+ * A histogram of latencies in nanoseconds with a fixed relative precision, in the style of HdrHistogram: values below
+ * 2048 are counted exactly, and larger values in buckets 1/1024th of their magnitude wide, so every reported
+ * percentile is within 0.1% of the true value, from nanoseconds up to hours, in a fixed array and without allocating
+ * while recording.
+ * <p>
+ * A histogram is not thread safe. Give each recording thread its own and add them together afterwards.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[(BUCKET_COUNT + 1) * SUB_BUCKET_HALF];
+    private long totalCount;
+    private long totalNanos;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Counts one latency. A negative latency is counted as 0.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        totalCount++;
+        totalNanos += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /**
+     * Adds every latency counted by another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        totalNanos += other.totalNanos;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return The smallest latency counted, or 0 if the histogram is empty.
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * @return The largest latency counted, or 0 if the histogram is empty.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return The mean latency, or 0 if the histogram is empty.
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) totalNanos / totalCount;
+    }
+
+    /**
+     * @param percentile A percentile from 0 to 100, e.g. 99.9.
+     * @return The latency that percentile of the counted latencies are at or below (to within the histogram's
+     * precision), or 0 if the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Values below 2 * SUB_BUCKET_HALF get an index each. Above that, a value whose highest bit is at position
+     * SUB_BUCKET_BITS + b is shifted right by b, leaving SUB_BUCKET_BITS + 1 significant bits, and indexed from
+     * b * SUB_BUCKET_HALF.
+     */
+    private static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return The largest value counted at the index.
+     */
+    private static long highestValueAt(int index) {
+        int shift = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
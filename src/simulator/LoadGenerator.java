@@ -0,0 +1,363 @@
+package simulator;
+
+import exceptions.DataValidationException;
+import order.Order;
+import order.OrderDTO;
+import price.PriceFactory;
+import product.BookSide;
+import product.ProductManager;
+import product.SymbolRegistry;
+import user.User;
+import user.UserManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The LoadGenerator drives the ProductManager with a configurable flow of adds and cancels from many users on many
+ * symbols, at a target rate, and measures the latency of every command.
+ * <p>
+ * The load is open loop: each command has an intended send time on a fixed schedule (rate commands per second, spread
+ * evenly over the sending threads), and is sent at that time whether or not earlier commands have finished. A
+ * command's latency is measured from its intended send time to the completion of its future, so when the engine
+ * falls behind, the time commands spend waiting to be sent is counted too, and a stall shows up in every command it
+ * delays rather than in just one (i.e. the measurement does not suffer from coordinated omission).
+ * <p>
+ * The mix of commands is set with setMix. A cancel picks a random user and cancels its oldest open order, and is sent
+ * as an add instead if the user has none. Adds are priced around a fixed base price per symbol: passive adds rest
+ * 1-10 cents away from it on their own side, and crossing adds are priced 10 cents through it, so they trade with
+ * the passive orders resting on the other side.
+ * <p>
+ * The books run on ProductManager matching shards (see startSharded) for the length of a run, since the sending
+ * threads submit commands concurrently.
+ */
+public final class LoadGenerator {
+    private static final int MAX_USERS = 26 * 26 * 26;
+    private static final int MAX_OFFSET_CENTS = 10;
+
+    private final String[] users;
+    private final String[] symbols;
+    private final int[] baseCents;
+
+    private double rate = 10_000;
+    private long durationNanos = 10_000_000_000L;
+    private long warmupNanos = 2_000_000_000L;
+    private int threadCount = 1;
+    private int shardCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private double cancelShare = 0.3;
+    private double crossShare = 0.2;
+    private long seed = System.nanoTime();
+
+    /**
+     * Creates a load generator for userCount users (named AAA, AAB, ...) trading symbolCount symbols (named S0000,
+     * S0001, ...). The users and books are created when a run starts.
+     * @param userCount The number of users, from 1 to 17,576.
+     * @param symbolCount The number of symbols, from 1 to SymbolRegistry.MAX_SYMBOLS (32,767), less any other
+     * symbols registered by the time the run starts.
+     * @throws DataValidationException If either count is out of range.
+     */
+    public LoadGenerator(int userCount, int symbolCount) throws DataValidationException {
+        if (userCount < 1 || userCount > MAX_USERS) {
+            throw new DataValidationException("Invalid user count: " + userCount);
+        }
+        if (symbolCount < 1 || symbolCount > SymbolRegistry.MAX_SYMBOLS) {
+            throw new DataValidationException("Invalid symbol count: " + symbolCount);
+        }
+        users = new String[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+        }
+        symbols = new String[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            String digits = Integer.toString(i, 36).toUpperCase();
+            symbols[i] = "S" + "000".substring(Math.min(3, digits.length() - 1)) + digits;
+        }
+        baseCents = new int[symbolCount];
+    }
+
+    /**
+     * @param commandsPerSecond The rate commands are sent at, across all the sending threads.
+     * @throws DataValidationException If the rate is not positive.
+     */
+    public void setRate(double commandsPerSecond) throws DataValidationException {
+        if (!(commandsPerSecond > 0)) {
+            throw new DataValidationException("Invalid rate: " + commandsPerSecond);
+        }
+        rate = commandsPerSecond;
+    }
+
+    /**
+     * @param seconds How long to measure for.
+     * @param warmupSeconds How long to send commands for before measuring, e.g. to let the JIT compile the engine.
+     * @throws DataValidationException If seconds is not positive or warmupSeconds is negative.
+     */
+    public void setDuration(double seconds, double warmupSeconds) throws DataValidationException {
+        if (!(seconds > 0) || !(warmupSeconds >= 0)) {
+            throw new DataValidationException("Invalid duration");
+        }
+        durationNanos = (long) (seconds * 1e9);
+        warmupNanos = (long) (warmupSeconds * 1e9);
+    }
+
+    /**
+     * @param threads The number of threads sending commands.
+     * @param shards The number of matching shards to run the books on.
+     * @throws DataValidationException If either is less than 1.
+     */
+    public void setThreads(int threads, int shards) throws DataValidationException {
+        if (threads < 1 || shards < 1) {
+            throw new DataValidationException("Invalid thread count");
+        }
+        threadCount = threads;
+        shardCount = shards;
+    }
+
+    /**
+     * Sets the mix of commands. The rest of the commands are passive adds.
+     * @param cancels The share of commands that are cancels, from 0 to 1.
+     * @param crossing The share of commands that are adds crossing the spread, from 0 to 1.
+     * @throws DataValidationException If either share is out of range, or they add up to more than 1.
+     */
+    public void setMix(double cancels, double crossing) throws DataValidationException {
+        if (!(cancels >= 0) || !(crossing >= 0) || cancels + crossing > 1) {
+            throw new DataValidationException("Invalid command mix");
+        }
+        cancelShare = cancels;
+        crossShare = crossing;
+    }
+
+    /**
+     * @param seed The seed the symbols' base prices and each sending thread's random choices are drawn from.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static final class Result {
+        /** Latencies of the commands sent after the warmup, from intended send time to completion. */
+        public final LatencyHistogram latency;
+
+        /** Commands sent after the warmup. */
+        public final long commandCount;
+
+        /** Commands sent after the warmup that completed exceptionally. */
+        public final long errorCount;
+
+        /** Cancels sent after the warmup that found their order already filled or cancelled. */
+        public final long missedCancelCount;
+
+        /** The rate commands were meant to be sent at. */
+        public final double targetRate;
+
+        /** From the start of the measured period to the completion of its last command. */
+        public final long elapsedNanos;
+
+        /** The furthest behind schedule any command was sent, in nanoseconds. */
+        public final long maxSendDelayNanos;
+
+        Result(LatencyHistogram latency, long commandCount, long errorCount, long missedCancelCount,
+               double targetRate, long elapsedNanos, long maxSendDelayNanos) {
+            this.latency = latency;
+            this.commandCount = commandCount;
+            this.errorCount = errorCount;
+            this.missedCancelCount = missedCancelCount;
+            this.targetRate = targetRate;
+            this.elapsedNanos = elapsedNanos;
+            this.maxSendDelayNanos = maxSendDelayNanos;
+        }
+
+        /**
+         * @return Commands completed per second over the measured period.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : commandCount * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Commands: %,d (%,d failed, %,d cancels missed) in %,.1f ms%n", commandCount,
+                    errorCount, missedCancelCount, elapsedNanos / 1e6)
+                    + String.format("Throughput: %,.0f commands/s (target %,.0f/s)%n", getThroughput(), targetRate)
+                    + String.format("Latency (us): p50 %,.1f  p99 %,.1f  p99.9 %,.1f  max %,.1f  mean %,.1f%n",
+                    latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                    latency.getValueAtPercentile(99.9) / 1e3, latency.getMax() / 1e3, latency.getMean() / 1e3)
+                    + String.format("Max send delay: %,.1f us", maxSendDelayNanos / 1e3);
+        }
+    }
+
+    /**
+     * Creates the users and a new, empty book for each symbol, starts the matching shards, sends commands for the
+     * warmup and the measured period, and waits for them all to complete before stopping the shards.
+     * @return The latencies and throughput of the measured period.
+     * @throws DataValidationException If the users or books cannot be created, e.g. because the SymbolRegistry has
+     * no room left for the symbols.
+     * @throws IllegalStateException If the ProductManager is already running sharded.
+     * @throws InterruptedException If interrupted while waiting for the run to finish.
+     */
+    public Result run() throws DataValidationException, InterruptedException {
+        SymbolRegistry registry = SymbolRegistry.getInstance();
+        int unregistered = 0;
+        for (String symbol : symbols) {
+            if (registry.codeOf(symbol) < 0) unregistered++;
+        }
+        if (registry.size() + unregistered > SymbolRegistry.MAX_SYMBOLS) {
+            throw new DataValidationException("Too many symbols: " + unregistered + " new symbols, but only "
+                    + (SymbolRegistry.MAX_SYMBOLS - registry.size()) + " more can be registered");
+        }
+
+        Random setup = new Random(seed);
+        UserManager.getInstance().init(users);
+        for (int i = 0; i < symbols.length; i++) {
+            ProductManager.getInstance().addProduct(symbols[i]);
+            baseCents[i] = 1_000 + setup.nextInt(49_000);
+        }
+
+        Sender[] senders = new Sender[threadCount];
+        ProductManager.getInstance().startSharded(shardCount);
+        long measureStart;
+        try {
+            // Leave the threads a moment to start before the first command is due.
+            long start = System.nanoTime() + 10_000_000;
+            measureStart = start + warmupNanos;
+            for (int i = 0; i < threadCount; i++) {
+                senders[i] = new Sender(i, setup.nextLong(), start, measureStart);
+                senders[i].thread.start();
+            }
+            for (Sender sender : senders) {
+                sender.thread.join();
+            }
+        } finally {
+            // Waits for every queued command, so every latency has been recorded once it returns.
+            ProductManager.getInstance().stopSharded();
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long commands = 0;
+        long errors = 0;
+        long missedCancels = 0;
+        long lastCompletion = measureStart;
+        long maxSendDelay = 0;
+        for (Sender sender : senders) {
+            for (Recorder recorder : sender.recorders) {
+                latency.add(recorder.latency);
+                commands += recorder.latency.getTotalCount();
+                errors += recorder.errors;
+                missedCancels += recorder.missedCancels;
+                lastCompletion = Math.max(lastCompletion, recorder.lastCompletion);
+            }
+            maxSendDelay = Math.max(maxSendDelay, sender.maxSendDelay);
+        }
+        return new Result(latency, commands, errors, missedCancels, rate, lastCompletion - measureStart, maxSendDelay);
+    }
+
+    /**
+     * The latencies recorded by one thread completing one sender's commands.
+     */
+    private static final class Recorder {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long errors;
+        long missedCancels;
+        long lastCompletion;
+    }
+
+    /**
+     * One sending thread. Thread i of n sends the commands due at start + (i + k * n) / rate seconds, for k = 0, 1, ...
+     */
+    private final class Sender {
+        final Thread thread;
+        final Random random;
+        final long start;
+        final long measureStart;
+        final long end;
+
+        /**
+         * A command's future completes on its shard's thread, or on this thread if it completed before this thread
+         * got to it, so each of those threads records into its own Recorder.
+         */
+        final List<Recorder> recorders = new ArrayList<>();
+        final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(() -> {
+            Recorder r = new Recorder();
+            synchronized (recorders) {
+                recorders.add(r);
+            }
+            return r;
+        });
+
+        long maxSendDelay;
+
+        // The user and the random draw that picked the kind of the command being made.
+        private User user;
+        private double pick;
+
+        Sender(int index, long seed, long start, long measureStart) {
+            this.random = new Random(seed);
+            this.start = start;
+            this.measureStart = measureStart;
+            this.end = measureStart + durationNanos;
+            this.thread = new Thread(() -> send(index), "load-sender-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private void send(int index) {
+            double period = 1e9 / rate;
+            for (long k = 0; ; k++) {
+                long due = start + (long) ((index + (double) k * threadCount) * period);
+                if (due >= end) break;
+                CommandReplayer.waitUntil(due);
+                long delay = System.nanoTime() - due;
+                if (due >= measureStart && delay > maxSendDelay) maxSendDelay = delay;
+
+                CompletableFuture<OrderDTO> future;
+                OrderDTO cancelled = cancelTarget();
+                if (cancelled != null) {
+                    future = ProductManager.getInstance().cancelAsync(cancelled.id);
+                } else {
+                    try {
+                        future = ProductManager.getInstance().addOrderAsync(nextOrder());
+                    } catch (DataValidationException e) {
+                        future = CompletableFuture.failedFuture(e);
+                    }
+                }
+                if (due >= measureStart) {
+                    boolean cancel = cancelled != null;
+                    future.whenComplete((result, failure) -> {
+                        long now = System.nanoTime();
+                        Recorder r = recorder.get();
+                        r.latency.record(now - due);
+                        if (failure != null) r.errors++;
+                        else if (cancel && result == null) r.missedCancels++;
+                        r.lastCompletion = Math.max(r.lastCompletion, now);
+                    });
+                }
+            }
+        }
+
+        /**
+         * Picks the user and kind of the next command.
+         * @return The open order to cancel, or null if the next command is an add.
+         */
+        private OrderDTO cancelTarget() {
+            user = UserManager.getInstance().getRandomUser(random);
+            pick = random.nextDouble();
+            return pick < cancelShare ? user.getOrderWithRemainingQty() : null;
+        }
+
+        /**
+         * @return An add for the user picked by cancelTarget().
+         */
+        private Order nextOrder() throws DataValidationException {
+            int symbol = random.nextInt(symbols.length);
+            BookSide side = TrafficSim.getRandomSide(random);
+            boolean crossing = pick >= cancelShare && pick < cancelShare + crossShare;
+            int offset = crossing ? -MAX_OFFSET_CENTS : 1 + random.nextInt(MAX_OFFSET_CENTS);
+            int cents = side == BookSide.BUY ? baseCents[symbol] - offset : baseCents[symbol] + offset;
+            int volume = 5 * (5 + random.nextInt(61)); // 25 to 325, in steps of 5
+            return new Order(user.getUserId(), symbols[symbol], PriceFactory.makePrice(cents), volume, side);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package simulator;
+
+/**
+ * How fast CommandReplayer plays back a recording.
+ */
+public enum ReplaySpeed {
+    /** Every command is sent as soon as the previous one has been queued, to measure throughput. */
+    MAXIMUM,
+
+    /** Commands are spaced out as they were when they were recorded. */
+    ORIGINAL
+}
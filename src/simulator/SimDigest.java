@@ -0,0 +1,112 @@
+package simulator;
+
+import event.EventLog;
+import event.EventSink;
+import event.EventType;
+import exceptions.DataValidationException;
+import order.Order;
+import order.OrderDTO;
+import product.BookSide;
+import product.ProductManager;
+import product.SymbolRegistry;
+import user.UserId;
+
+/**
+ * Folds the outcome of a simulator run into two 64-bit digests, so that a replay can be checked against its
+ * recording without storing every event:
+ * <ul>
+ * <li>The fill digest covers every FILL, PARTIAL_FILL and CANCEL, in the order each book produced them.</li>
+ * <li>The book digest covers every order left resting in the books, in priority order.</li>
+ * </ul>
+ * Neither digest depends on order ids, which differ from run to run, or on how books were spread over shards:
+ * events are folded into one digest per book (each book only ever reports from one thread) and the books are combined
+ * in a fixed order at the end.
+ * <p>
+ * While installed, the SimDigest is the EventLog's sink and passes every event on to the sink it replaced.
+ */
+final class SimDigest implements EventSink {
+    private final EventSink next;
+
+    /** hashes[code] is the fill digest of the book with that SymbolRegistry code. */
+    private final long[] hashes = new long[SymbolRegistry.MAX_SYMBOLS];
+
+    private SimDigest(EventSink next) {
+        this.next = next;
+    }
+
+    /**
+     * Makes a new SimDigest the EventLog's sink.
+     */
+    static SimDigest install() throws DataValidationException {
+        SimDigest digest = new SimDigest(EventLog.getInstance().getSink());
+        EventLog.getInstance().setSink(digest);
+        return digest;
+    }
+
+    /**
+     * Gives the EventLog back the sink this SimDigest replaced.
+     */
+    void uninstall() throws DataValidationException {
+        EventLog.getInstance().setSink(next);
+    }
+
+    @Override
+    public void orderEvent(EventType type, BookSide side, int volume, Order order) {
+        if (type != EventType.ADD) {
+            int code = order.getProductCode();
+            long h = hashes[code];
+            h = mix(h, type.ordinal());
+            h = mix(h, side.ordinal());
+            h = mix(h, UserId.encode(order.getUser()));
+            h = mix(h, order.getPrice().getCents());
+            h = mix(h, volume);
+            h = mix(h, order.getRemainingVolume());
+            hashes[code] = h;
+        }
+        next.orderEvent(type, side, volume, order);
+    }
+
+    @Override
+    public void currentMarket(String symbol, long buyCents, int buyVolume, long sellCents, int sellVolume) {
+        next.currentMarket(symbol, buyCents, buyVolume, sellCents, sellVolume);
+    }
+
+    /**
+     * @param products The symbols of the run's books, in the order they should be combined.
+     * @return The digest of every fill and cancel reported since this SimDigest was installed.
+     */
+    long fillDigest(String[] products) {
+        long h = 0;
+        for (String product : products) {
+            int code = SymbolRegistry.getInstance().codeOf(product);
+            h = mix(h, code < 0 ? 0 : hashes[code]);
+        }
+        return h;
+    }
+
+    /**
+     * @param products The symbols of the run's books, in the order they should be combined.
+     * @return The digest of the orders now resting in those books.
+     */
+    static long bookDigest(String[] products) {
+        long h = 0;
+        for (String product : products) {
+            for (OrderDTO o : ProductManager.getInstance().getRestingOrders(product)) {
+                h = mix(h, o.side.ordinal());
+                h = mix(h, UserId.encode(o.user));
+                h = mix(h, o.price.getCents());
+                h = mix(h, o.originalVolume);
+                h = mix(h, o.remainingVolume);
+                h = mix(h, o.filledVolume);
+                h = mix(h, o.cancelledVolume);
+            }
+            h = mix(h, -1);
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value * 0x9E3779B97F4A7C15L;
+        return Long.rotateLeft(h, 27) * 0xBF58476D1CE4E5B9L;
+    }
+}
@@ -13,19 +13,40 @@ import product.ProductManager;
 import user.User;
 import user.UserManager;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * The TrafficSim class is a trading behavior driver that creates product books and users, then simulates users trading
  * those products using the classes in this project.
+ * <p>
+ * Every random choice in a run comes from one Random created from a seed, so a run can be repeated exactly. A run can
+ * also be recorded (see record) and played back later with CommandReplayer, e.g. to compare engine versions on
+ * identical order flow.
  */
 public class TrafficSim {
+    private static final String[] USERS = {"ANN", "BOB", "CAT", "DOG", "EGG"};
+    private static final String[] PRODUCTS = {"WMT", "TGT", "AMZN", "TSLA"};
+    private static final double[] BASE_PRICES = {140.98, 174.76, 102.11, 196.81};
+
     private static final HashMap<String, Double> basePrices = new HashMap<>();
 
     public static void runSim()
             throws DataValidationException, InvalidPriceOperation, OrderNotFoundException {
-        UserManager.getInstance().init(new String[]{"ANN", "BOB", "CAT", "DOG", "EGG"});
+        runSim(new Random().nextLong());
+    }
+
+    /**
+     * Runs the simulation with its random choices drawn from a Random created with the given seed, so a run can be
+     * repeated exactly (the seed is printed at the end of every run).
+     * @param seed The seed for the run's Random.
+     */
+    public static void runSim(long seed)
+            throws DataValidationException, InvalidPriceOperation, OrderNotFoundException {
+        UserManager.getInstance().init(USERS);
 
         User ANN = UserManager.getInstance().getUser("ANN");
         User BOB = UserManager.getInstance().getUser("BOB");
@@ -45,36 +66,12 @@ public class TrafficSim {
 
         CurrentMarketPublisher.getInstance().unSubscribeCurrentMarket("TGT", BOB);
 
-        ProductManager.getInstance().addProduct("WMT");
-        ProductManager.getInstance().addProduct("TGT");
-        ProductManager.getInstance().addProduct("AMZN");
-        ProductManager.getInstance().addProduct("TSLA");
-        basePrices.put("WMT", 140.98);
-        basePrices.put("TGT", 174.76);
-        basePrices.put("AMZN", 102.11);
-        basePrices.put("TSLA", 196.81);
-
-        for (int i = 0; i < 100; i++) {
-            User randomUser = UserManager.getInstance().getRandomUser();
-
-            if (Math.random() < 0.9) {
-                String randomProduct = ProductManager.getInstance().getRandomProduct();
-                BookSide randomSide = getRandomSide();
-                int volumeH = (int) (25 + (Math.random() * 300)); // random value between 25 and 325
-                int volume = (int) Math.round(volumeH / 5.0) * 5;
-
-                Price price = getPrice(randomProduct, randomSide);
-                Order order = new Order(randomUser.getUserId(), randomProduct, price, volume, randomSide);
-                OrderDTO orderDTO = ProductManager.getInstance().addOrder(order);
-                randomUser.addOrder(orderDTO);
-            } else {
-                 if (randomUser.hasOrderWithRemainingQty()) {
-                     OrderDTO randomOrder = randomUser.getOrderWithRemainingQty();
-                     OrderDTO cancelledDTO = ProductManager.getInstance().cancel(randomOrder);
+        addProducts();
 
-                     if (cancelledDTO != null) randomUser.addOrder(cancelledDTO);
-                 }
-            }
+        try {
+            generate(new Random(seed), 100, null);
+        } catch (IOException e) {
+            // Only a CommandRecorder can throw, and this run is not recorded.
         }
         System.out.println(ProductManager.getInstance().toString());
         System.out.println(UserManager.getInstance().toString());
@@ -83,6 +80,7 @@ public class TrafficSim {
         System.out.println(CAT.getCurrentMarkets());;
         System.out.println(DOG.getCurrentMarkets());;
         System.out.println(EGG.getCurrentMarkets());;
+        System.out.println("Seed: " + seed);
 
         CurrentMarketPublisher.getInstance().unSubscribeCurrentMarket("WMT", ANN);
         CurrentMarketPublisher.getInstance().unSubscribeCurrentMarket("TGT", ANN);
@@ -94,30 +92,100 @@ public class TrafficSim {
         CurrentMarketPublisher.getInstance().unSubscribeCurrentMarket("WMT", EGG);
     }
 
-    private static Price getPrice(String symbol, BookSide side) throws InvalidPriceOperation {
+    /**
+     * Runs commandCount commands of the simulation from a clean market (new users and empty books) without printing
+     * anything, and records them to a file that CommandReplayer can play back. The recording ends with digests of the
+     * fills and the final books, which a replay is checked against.
+     * @param seed The seed for the run's Random.
+     * @param commandCount How many adds and cancels to try; a cancel is skipped if its user has no open orders.
+     * @param file The file to record to.
+     * @return The number of commands recorded.
+     * @throws IOException If the recording cannot be written.
+     */
+    public static long record(long seed, int commandCount, Path file)
+            throws DataValidationException, OrderNotFoundException, IOException {
+        UserManager.getInstance().init(USERS);
+        addProducts();
+        SimDigest digest = SimDigest.install();
+        try (CommandRecorder recorder = new CommandRecorder(file, seed, USERS, PRODUCTS)) {
+            try {
+                generate(new Random(seed), commandCount, recorder);
+            } finally {
+                digest.uninstall();
+            }
+            recorder.finish(digest.fillDigest(PRODUCTS), SimDigest.bookDigest(PRODUCTS));
+            return recorder.getCommandCount();
+        }
+    }
+
+    /**
+     * Creates an empty book for each of the simulated products.
+     */
+    private static void addProducts() throws DataValidationException {
+        for (int i = 0; i < PRODUCTS.length; i++) {
+            ProductManager.getInstance().addProduct(PRODUCTS[i]);
+            basePrices.put(PRODUCTS[i], BASE_PRICES[i]);
+        }
+    }
+
+    /**
+     * Has random users send commandCount random adds (90%) and cancels (10%) to the ProductManager.
+     * @param random The source of every random choice.
+     * @param recorder Records each command before it is sent, or null.
+     */
+    private static void generate(Random random, int commandCount, CommandRecorder recorder)
+            throws DataValidationException, OrderNotFoundException, IOException {
+        for (int i = 0; i < commandCount; i++) {
+            User randomUser = UserManager.getInstance().getRandomUser(random);
+
+            if (random.nextDouble() < 0.9) {
+                String randomProduct = ProductManager.getInstance().getRandomProduct(random);
+                BookSide randomSide = getRandomSide(random);
+                int volumeH = (int) (25 + (random.nextDouble() * 300)); // random value between 25 and 325
+                int volume = (int) Math.round(volumeH / 5.0) * 5;
+
+                Price price = getPrice(randomProduct, randomSide, random);
+                Order order = new Order(randomUser.getUserId(), randomProduct, price, volume, randomSide);
+                if (recorder != null) recorder.recordAdd(order);
+                ProductManager.getInstance().addOrder(order);
+            } else {
+                 if (randomUser.hasOrderWithRemainingQty()) {
+                     OrderDTO randomOrder = randomUser.getOrderWithRemainingQty();
+                     if (recorder != null) recorder.recordCancel(randomOrder.id);
+                     ProductManager.getInstance().cancel(randomOrder);
+                 }
+            }
+        }
+    }
+
+    private static Price getPrice(String symbol, BookSide side, Random random) {
         Double basePrice = basePrices.get(symbol);
         double priceWidth = 0.02;
         double startPoint = 0.01;
-        double tickSize = 0.1;
+        int tickCents = 10;
 
         double gapFromBase = basePrice * priceWidth; // 5.0
-        double priceVariance = gapFromBase * (Math.random());
+        double priceVariance = gapFromBase * (random.nextDouble());
 
         if (side == BookSide.BUY) {
             double priceToUse = basePrice * (1 - startPoint);
             priceToUse += priceVariance;
-            double priceToTick = Math.round(priceToUse * 1 / tickSize) / 10.0;
-            return PriceFactory.makePrice(String.valueOf(priceToTick));
+            int ticks = (int) Math.round(priceToUse * 100 / tickCents);
+            return PriceFactory.makePrice(ticks * tickCents);
         } else {
             double priceToUse = basePrice * (1 + startPoint);
             priceToUse -= priceVariance;
-            double priceToTick = Math.round(priceToUse * 1 / tickSize) / 10.0;
-            return PriceFactory.makePrice(String.valueOf(priceToTick));
+            int ticks = (int) Math.round(priceToUse * 100 / tickCents);
+            return PriceFactory.makePrice(ticks * tickCents);
         }
     }
 
     public static BookSide getRandomSide() {
-        int i = new Random().nextInt(BookSide.values().length);
+        return getRandomSide(ThreadLocalRandom.current());
+    }
+
+    public static BookSide getRandomSide(Random random) {
+        int i = random.nextInt(BookSide.values().length);
         return BookSide.values()[i];
     }
 }
@@ -3,23 +3,68 @@ package user;
 import currentmarket.CurrentMarketObserver;
 import currentmarket.CurrentMarketSide;
 import exceptions.DataValidationException;
+import order.Order;
 import order.OrderDTO;
+import order.OrderId;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class represents a user (trader) of the trading system. Traders will enter orders
  * for trading in our system. The user will also maintain a collection of orders submitted.
+ * <p>
+ * The ProductBooks push every change to an order (add, fill, cancel) to its user through the UserManager, so the
+ * user's copies are always current. The user keeps one record per order and updates its volumes in place, so a fill
+ * costs a lookup and a few field writes. Orders with remaining volume are kept in an open-order index, oldest first;
+ * once an order is fully filled or cancelled it moves to the order history, which keeps only the most recent orders
+ * (see the constructor).
  */
 public class User implements CurrentMarketObserver {
+    /** How many fully filled or cancelled orders a user keeps, unless told otherwise. */
+    public static final int DEFAULT_HISTORY_CAPACITY = 1000;
 
     private final String userId;
-    private final HashMap<String, OrderDTO> orders;
-    private final HashMap<String, CurrentMarketSide[]> currentMarkets;
+
+    /** &lt;order id, record&gt; of the orders that still have remaining volume. */
+    private final UserOrderIndex openOrders = new UserOrderIndex();
+
+    /** The ends of the list of open orders, linked through UserOrder.older/newer; null if there are none. */
+    private UserOrder oldestOpen;
+    private UserOrder newestOpen;
+
+    /**
+     * The most recently finished (fully filled or cancelled) orders, as a ring: the oldest is at historyStart. Once
+     * the ring is full, each newly finished order replaces the oldest.
+     */
+    private final UserOrder[] orderHistory;
+    private int historyStart;
+    private int historySize;
+
+    /**
+     * Records dropped from the order history, linked through UserOrder.newer, to be reused for new orders. Once the
+     * history is full, every finished order frees the record of the one it replaces, so a user taking a steady flow
+     * of orders allocates no records at all.
+     */
+    private UserOrder freeRecords;
+
+    private final ConcurrentHashMap<String, CurrentMarketSide[]> currentMarkets;
+
     public User(String userId) throws DataValidationException {
+        this(userId, DEFAULT_HISTORY_CAPACITY);
+    }
+
+    /**
+     * @param userId The user's id.
+     * @param historyCapacity How many fully filled or cancelled orders to keep; 0 keeps none.
+     * @throws DataValidationException If the user id is invalid or historyCapacity is negative.
+     */
+    public User(String userId, int historyCapacity) throws DataValidationException {
         this.userId = setUserId(userId);
-        this.orders = new HashMap<>();
-         this.currentMarkets = new HashMap<>();
+        if (historyCapacity < 0) {
+            throw new DataValidationException("Invalid history capacity");
+        }
+        this.orderHistory = new UserOrder[historyCapacity];
+        this.currentMarkets = new ConcurrentHashMap<>();
     }
 
     /**
@@ -30,7 +75,7 @@ public class User implements CurrentMarketObserver {
      * (any 3 uppercase letters from A-Z).
      */
     private String setUserId(String userId) throws DataValidationException {
-        if (userId == null || !userId.matches("^[A-Z]{3}$")) {
+        if (!UserId.isValid(userId)) {
             throw new DataValidationException("Invalid setUserId parameter");
         }
 
@@ -42,40 +87,131 @@ public class User implements CurrentMarketObserver {
     }
 
     /**
-     * Add the incoming OrderDTO to the user's orders HashMap
+     * Records the latest state of one of the user's orders: in the open orders if it has remaining volume, otherwise
+     * in the order history.
      * @param o The OrderDTO to be added.
      * @throws DataValidationException If OrderDTO o is null.
      */
-    public void addOrder(OrderDTO o) throws DataValidationException {
+    public synchronized void addOrder(OrderDTO o) throws DataValidationException {
         if (o == null) {
             throw new DataValidationException("Invalid addOrder parameter");
         }
 
-        orders.put(o.id, o);
+        UserOrder order = openOrders.get(o.id);
+        if (order == null) {
+            order = newRecord();
+            order.set(o);
+            opened(order);
+        } else {
+            order.set(o);
+        }
+        if (order.remainingVolume <= 0) {
+            finished(order);
+        }
     }
 
     /**
-     * @return True if any of the OrderDTOs in the user's orders HashMap have a remainingQuantity > 0. False otherwise.
+     * Records the latest state of one of the user's orders, as pushed by the books (see UserManager.orderUpdated).
+     * A record is only made the first time the user hears of the order; after that its volumes are updated in place.
+     * @param o The order that changed.
      */
-    public boolean hasOrderWithRemainingQty() {
-        for (var o : orders.entrySet()) {
-            if (o.getValue().remainingVolume > 0) return true;
+    synchronized void orderUpdated(Order o) {
+        UserOrder order = openOrders.get(o.getId());
+        if (order == null) {
+            order = newRecord();
+            order.set(o);
+            opened(order);
+        } else {
+            order.update(o);
+        }
+        if (order.remainingVolume <= 0) {
+            finished(order);
         }
+    }
 
-        return false;
+    /**
+     * @return True if any of the user's orders have a remainingQuantity > 0. False otherwise.
+     */
+    public synchronized boolean hasOrderWithRemainingQty() {
+        return oldestOpen != null;
     }
 
     /**
-     * @return Any order from the user's orders HashMap that has a remainingQuantity > 0. Null otherwise.
+     * @return A copy of the user's oldest order that has a remainingQuantity > 0. Null otherwise.
      */
-    public OrderDTO getOrderWithRemainingQty() {
-        for (var o : orders.entrySet()) {
-            if (o.getValue().remainingVolume > 0) {
-                return o.getValue();
-            }
+    public synchronized OrderDTO getOrderWithRemainingQty() {
+        return oldestOpen == null ? null : oldestOpen.toDTO(userId);
+    }
+
+    /**
+     * @return The number of the user's orders that have a remainingQuantity > 0.
+     */
+    public synchronized int getOpenOrderCount() {
+        return openOrders.size();
+    }
+
+    /**
+     * @return The number of fully filled or cancelled orders the user has kept (at most the history capacity).
+     */
+    public synchronized int getOrderHistoryCount() {
+        return historySize;
+    }
+
+    /**
+     * @return A record for an order the user has not seen before.
+     */
+    private UserOrder newRecord() {
+        UserOrder order = freeRecords;
+        if (order == null) return new UserOrder();
+        freeRecords = order.newer;
+        order.newer = null;
+        return order;
+    }
+
+    private void free(UserOrder order) {
+        order.product = null;
+        order.price = null;
+        order.side = null;
+        order.newer = freeRecords;
+        freeRecords = order;
+    }
+
+    /**
+     * Adds a new record to the open orders, as the newest.
+     */
+    private void opened(UserOrder order) {
+        openOrders.put(order);
+        order.older = newestOpen;
+        order.newer = null;
+        if (newestOpen == null) {
+            oldestOpen = order;
+        } else {
+            newestOpen.newer = order;
         }
+        newestOpen = order;
+    }
 
-        return null;
+    /**
+     * Moves a record from the open orders to the order history. If the history is full, the oldest kept order is
+     * dropped and its record freed for reuse.
+     */
+    private void finished(UserOrder order) {
+        openOrders.remove(order.id);
+        if (order.older == null) oldestOpen = order.newer; else order.older.newer = order.newer;
+        if (order.newer == null) newestOpen = order.older; else order.newer.older = order.older;
+        order.older = null;
+        order.newer = null;
+
+        int capacity = orderHistory.length;
+        if (capacity == 0) {
+            free(order);
+        } else if (historySize == capacity) {
+            free(orderHistory[historyStart]);
+            orderHistory[historyStart] = order;
+            historyStart = (historyStart + 1) % capacity;
+        } else {
+            orderHistory[(historyStart + historySize++) % capacity] = order;
+        }
     }
 
     /**
@@ -84,27 +220,35 @@ public class User implements CurrentMarketObserver {
      * Example output:
      * User Id: CAT
      *   Product: GOOG, Price: $52.45, OriginalVolume: 220, RemainingVolume: 0, CancelledVolume:
-     *   0, FilledVolume: 220, User: CAT, Side: SELL, Id: CATGOOG$52.4557855274865100
+     *   0, FilledVolume: 220, User: CAT, Side: SELL, Id: GOOG-1042
      */
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder s = new StringBuilder();
         s.append("User ID: ").append(userId).append("\n");
-        for (var o : orders.entrySet()) {
-            OrderDTO order = o.getValue();
-            s.append("  Product: ").append(order.product).append(", Price: ").append(order.price)
-                    .append(", OriginalVolume: ").append(order.originalVolume).append(", RemainingVolume: ")
-                    .append(order.remainingVolume).append(", CancelledVolume: ").append(order.cancelledVolume)
-                    .append(", FilledVolume: ").append(order.filledVolume).append(", User: ").append(order.user)
-                    .append(", Side: ").append(order.side).append(", Id: ").append(order.id).append("\n");
+        for (UserOrder order = oldestOpen; order != null; order = order.newer) {
+            appendOrder(s, order);
+        }
+        for (int i = 0; i < historySize; i++) {
+            appendOrder(s, orderHistory[(historyStart + i) % orderHistory.length]);
         }
 
         return s.toString();
     }
 
+    private void appendOrder(StringBuilder s, UserOrder order) {
+        s.append("  Product: ").append(order.product).append(", Price: ").append(order.price)
+                .append(", OriginalVolume: ").append(order.originalVolume).append(", RemainingVolume: ")
+                .append(order.remainingVolume).append(", CancelledVolume: ").append(order.cancelledVolume)
+                .append(", FilledVolume: ").append(order.filledVolume).append(", User: ").append(userId)
+                .append(", Side: ").append(order.side).append(", Id: ");
+        OrderId.appendTo(s, order.id);
+        s.append("\n");
+    }
+
     /**
      * This method should create a 2-element array of CurrentMarketSide objects ([0]=Buy, [1]=Sell).
-     * Then put the values in the currentMarkets HashMap, using the stock symbol as the key and the array of
+     * Then put the values in the currentMarkets map, using the stock symbol as the key and the array of
      * CurrentMarketSide objects as the value.
      * @param symbol The stock symbol/id (e.g. "TSLA", "AAPL").
      * @param buySide CurrentMarketSide object representing the buy side of the market.
@@ -0,0 +1,45 @@
+package user;
+
+/**
+ * User ids are exactly 3 uppercase letters, so each one maps to a number below 26^3 = 17576 (15 bits). The
+ * UserManager indexes its users by that number instead of hashing the id String.
+ */
+public final class UserId {
+    /** One more than the largest code a user id can have. */
+    public static final int CODE_COUNT = 26 * 26 * 26;
+
+    private UserId() {}
+
+    /**
+     * @return True if the id is exactly 3 uppercase letters from A-Z.
+     */
+    public static boolean isValid(String userId) {
+        return encode(userId) != -1;
+    }
+
+    /**
+     * @return The id as a number from 0 to CODE_COUNT - 1, or -1 if the id is null or not valid (see isValid).
+     */
+    public static int encode(String userId) {
+        if (userId == null || userId.length() != 3) return -1;
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = userId.charAt(i);
+            if (c < 'A' || c > 'Z') return -1;
+            code = code * 26 + (c - 'A');
+        }
+        return code;
+    }
+
+    /**
+     * @return The user id with the given code (see encode).
+     */
+    public static String decode(int code) {
+        char[] chars = new char[3];
+        for (int i = 2; i >= 0; i--) {
+            chars[i] = (char) ('A' + code % 26);
+            code /= 26;
+        }
+        return new String(chars);
+    }
+}
@@ -1,49 +1,86 @@
 package user;
 
 import exceptions.DataValidationException;
+import order.Order;
 import order.OrderDTO;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * The UserManager singleton class maintains a collections of all users in the system. It acts as a Facade to the users.
+ * <p>
+ * Users are found by their UserId code (a number below 17576 computed from the 3 letters of the id), which indexes an
+ * array directly, so no id String is hashed on the order path.
  */
 public final class UserManager {
-    private static UserManager instance;
+    private static final UserManager instance = new UserManager();
     public static UserManager getInstance() {
-        if (instance == null) {
-            instance = new UserManager();
-        }
-
         return instance;
     }
 
     private UserManager() {}
 
-    /** &lt;userId, User object&gt; */
-    private final HashMap<String, User> users = new HashMap<>();
+    /** usersByCode[UserId.encode(userId)] is the User with that id, or null. */
+    private final AtomicReferenceArray<User> usersByCode = new AtomicReferenceArray<>(UserId.CODE_COUNT);
+
+    /** Every user, in the order they were added. Replaced (never modified) when users are added. */
+    private volatile User[] userList = new User[0];
+
+    /** How many fully filled or cancelled orders each user created by init keeps. */
+    private volatile int historyCapacity = User.DEFAULT_HISTORY_CAPACITY;
+
+    /**
+     * Sets how many fully filled or cancelled orders each user keeps in its order history (see User). Applies to
+     * users created by later calls to init.
+     * @param capacity The number of orders to keep per user; 0 keeps none.
+     * @throws DataValidationException If capacity is negative.
+     */
+    public void setHistoryCapacity(int capacity) throws DataValidationException {
+        if (capacity < 0) {
+            throw new DataValidationException("Invalid history capacity");
+        }
+        historyCapacity = capacity;
+    }
 
     /**
-     * Creates each user from the ids in the usersIn array, then adds each new user to the users HashMap.
+     * Creates each user from the ids in the usersIn array, then adds each new user to the users.
      * @param usersIn An array with the id's of some amount of new users
      * @throws DataValidationException Each userId must match the pattern ^[A-Z]{3}$ (any 3 uppercase letters from A-Z).
      */
-    public void init(String[] usersIn) throws DataValidationException {
+    public synchronized void init(String[] usersIn) throws DataValidationException {
         for (String userId : usersIn) {
-            User user = new User(userId);
-            users.put(userId, user);
+            User user = new User(userId, historyCapacity);
+            User replaced = usersByCode.getAndSet(UserId.encode(userId), user);
+
+            User[] list;
+            if (replaced == null) {
+                list = Arrays.copyOf(userList, userList.length + 1);
+                list[list.length - 1] = user;
+            } else {
+                list = userList.clone();
+                list[Arrays.asList(list).indexOf(replaced)] = user;
+            }
+            userList = list;
         }
     }
 
     /**
-     * @return A random User object from the users HashMap.
+     * @return A random User object from the users.
      */
     public User getRandomUser() {
-        ArrayList<User> u = new ArrayList<>(users.values());
-        int randomIndex = new Random().nextInt(u.size());
-        return u.get(randomIndex);
+        return getRandomUser(ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param random The source of randomness, e.g. a seeded Random for a reproducible run.
+     * @return A random User object from the users.
+     */
+    public User getRandomUser(Random random) {
+        User[] list = userList;
+        return list[random.nextInt(list.length)];
     }
 
     /**
@@ -53,11 +90,26 @@ public final class UserManager {
      * @throws DataValidationException If o is null.
      */
     public void addToUser(String userId, OrderDTO o) throws DataValidationException {
-        users.get(userId).addOrder(o);
+        getUser(userId).addOrder(o);
+    }
+
+    /**
+     * Pushes the current state of an order to the User who placed it. Called by the ProductBooks whenever an order is
+     * added, filled or cancelled. Orders from users the UserManager does not know are ignored.
+     * @param o The order that changed.
+     */
+    public void orderUpdated(Order o) {
+        User user = getUser(o.getUser());
+        if (user != null) user.orderUpdated(o);
     }
 
+    /**
+     * @param id A 3 letter user id.
+     * @return The User with that id, or null if there is none.
+     */
     public User getUser(String id) {
-        return users.getOrDefault(id, null);
+        int code = UserId.encode(id);
+        return code < 0 ? null : usersByCode.get(code);
     }
 
     /**
@@ -78,7 +130,7 @@ public final class UserManager {
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
-        for (User user : users.values()) {
+        for (User user : userList) {
             s.append(user.toString()).append("\n");
         }
         return s.toString();
@@ -0,0 +1,66 @@
+package user;
+
+import order.Order;
+import order.OrderDTO;
+import price.Price;
+import product.BookSide;
+
+/**
+ * A User's record of one of its orders. The books push every change to the order (see UserManager.orderUpdated) and
+ * the record's volumes are updated in place, so following an order through its fills costs no allocation. Records
+ * never leave the User; callers get OrderDTO copies of them.
+ */
+final class UserOrder {
+    String product;
+    Price price;
+    BookSide side;
+    long id;
+    int originalVolume;
+    int remainingVolume;
+    int cancelledVolume;
+    int filledVolume;
+
+    /** The neighbours of this record in the User's list of open orders, oldest first. */
+    UserOrder older;
+    UserOrder newer;
+
+    /**
+     * Takes the order's identity and volumes.
+     */
+    void set(Order o) {
+        product = o.getProduct();
+        price = o.getPrice();
+        side = o.getSide();
+        id = o.getId();
+        originalVolume = o.getOriginalVolume();
+        update(o);
+    }
+
+    /**
+     * Takes the order's identity and volumes.
+     */
+    void set(OrderDTO o) {
+        product = o.product;
+        price = o.price;
+        side = o.side;
+        id = o.id;
+        originalVolume = o.originalVolume;
+        remainingVolume = o.remainingVolume;
+        cancelledVolume = o.cancelledVolume;
+        filledVolume = o.filledVolume;
+    }
+
+    /**
+     * Takes the order's current volumes.
+     */
+    void update(Order o) {
+        remainingVolume = o.getRemainingVolume();
+        cancelledVolume = o.getCancelledVolume();
+        filledVolume = o.getFilledVolume();
+    }
+
+    OrderDTO toDTO(String user) {
+        return new OrderDTO(user, product, price, side, id, originalVolume, remainingVolume, cancelledVolume,
+                filledVolume);
+    }
+}
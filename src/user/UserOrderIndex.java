@@ -0,0 +1,78 @@
+package user;
+
+/**
+ * Maps order ids to a User's open UserOrders. Like product.OrderLocator, this is an open-addressing hash table of
+ * primitive keys, so looking up the order behind each fill does not box its id. Ids are never 0, so 0 marks an empty
+ * bucket. Not thread safe; the User guards it.
+ */
+final class UserOrderIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private UserOrder[] orders = new UserOrder[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    void put(UserOrder order) {
+        if (size * 2 >= keys.length) resize();
+        int i = bucket(order.id);
+        while (keys[i] != 0 && keys[i] != order.id) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) size++;
+        keys[i] = order.id;
+        orders[i] = order;
+    }
+
+    /**
+     * @return The open order with the given id, or null if there is none.
+     */
+    UserOrder get(long orderId) {
+        for (int i = bucket(orderId); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == orderId) return orders[i];
+        }
+        return null;
+    }
+
+    void remove(long orderId) {
+        int i = bucket(orderId);
+        while (keys[i] != orderId) {
+            if (keys[i] == 0) return;
+            i = (i + 1) & mask;
+        }
+        size--;
+
+        // Shift later entries of the same probe run back into the gap, so lookups never stop short at it.
+        int gap = i;
+        for (int j = (gap + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+            int home = bucket(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                orders[gap] = orders[j];
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+        orders[gap] = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int bucket(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        UserOrder[] oldOrders = orders;
+        keys = new long[oldKeys.length * 2];
+        orders = new UserOrder[oldKeys.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) put(oldOrders[i]);
+        }
+    }
+}